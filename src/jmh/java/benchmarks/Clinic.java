@@ -0,0 +1,152 @@
+package benchmarks;
+
+import net.sf.jasperreports.engine.JRDataSource;
+
+import javax.swing.RowSorter;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableModel;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Доступ бенчмарков к классам приложения.
+ * <p>
+ * Классы приложения лежат в пакете по умолчанию, а JMH не принимает бенчмарки без пакета;
+ * из именованного пакета классы без пакета не импортируются, поэтому нужные методы
+ * вызываются через {@link MethodHandle}, найденные один раз. Вызов стоит доли микросекунды,
+ * что несущественно для измеряемых операций (все они проходят по всей таблице).
+ * Модель таблицы снаружи видна как {@link TableModel}.
+ */
+final class Clinic {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> MODEL = load("PatientTableModel");
+    private static final Class<?> XML_FILE = load("XMLfile");
+    private static final Class<?> LOAD_MODE = load("XMLfile$LoadMode");
+    private static final Class<?> SNAPSHOT = load("PatientSnapshot");
+
+    private static final MethodHandle NEW_MODEL = constructor(MODEL);
+    private static final MethodHandle SET_ROWS = method(MODEL, "setRows", void.class, List.class);
+    private static final MethodHandle FIND_ROWS = method(MODEL, "findRows", BitSet.class, int.class, String.class);
+    private static final MethodHandle SNAPSHOT_OF = method(MODEL, "snapshot", SNAPSHOT);
+    private static final MethodHandle LOAD = staticMethod(XML_FILE, "loadFromXML", void.class, MODEL, File.class, LOAD_MODE);
+    private static final MethodHandle WRITE = staticMethod(XML_FILE, "writeXML", void.class, TableModel.class, File.class);
+    private static final MethodHandle NEW_SORTER = constructor(load("PatientRowSorter"), MODEL);
+    private static final MethodHandle NEW_DATA_SOURCE = constructor(load("PatientDataSource"), SNAPSHOT);
+    private static final MethodHandle NEW_STATUS_RENDERER = constructor(load("StatusCellRenderer"));
+    private static final Class<?> GENERATOR = load("DatasetGenerator");
+    private static final MethodHandle NEW_GENERATOR = constructor(GENERATOR, long.class);
+    private static final MethodHandle GENERATE = method(GENERATOR, "rows", List.class, int.class);
+
+    private static final Object STREAMING = loadMode("STREAMING");
+    private static final Object DOM = loadMode("DOM");
+
+    /** Колонки модели (как в PatientTableModel). */
+    static final int NAME = 0;
+    static final int DATE = 4;
+
+    private Clinic() {
+    }
+
+    /**
+     * Воспроизводимые строки пациентов от DatasetGenerator.
+     * @param size число строк
+     */
+    @SuppressWarnings("unchecked")
+    static List<Object[]> rows(int size) {
+        return (List<Object[]>) invoke(GENERATE, invoke(NEW_GENERATOR, (long) size), size);
+    }
+
+    static AbstractTableModel newModel() {
+        return (AbstractTableModel) invoke(NEW_MODEL);
+    }
+
+    static AbstractTableModel newModel(List<Object[]> rows) {
+        AbstractTableModel model = newModel();
+        invoke(SET_ROWS, model, rows);
+        return model;
+    }
+
+    /** XMLfile.loadFromXML потоково (StAX) или через DOM. */
+    static void load(TableModel model, File file, boolean dom) {
+        invoke(LOAD, model, file, dom ? DOM : STREAMING);
+    }
+
+    /** XMLfile.writeXML. */
+    static void write(TableModel model, File file) {
+        invoke(WRITE, model, file);
+    }
+
+    /** Новый PatientRowSorter (с ключами сортировки дат). */
+    static RowSorter<?> newSorter(TableModel model) {
+        return (RowSorter<?>) invoke(NEW_SORTER, model);
+    }
+
+    /** PatientTableModel.findRows — поиск подстроки по индексу. */
+    static BitSet findRows(TableModel model, int column, String query) {
+        return (BitSet) invoke(FIND_ROWS, model, column, query);
+    }
+
+    /** Новый StatusCellRenderer (раскраска статуса приёма). */
+    static TableCellRenderer newStatusRenderer() {
+        return (TableCellRenderer) invoke(NEW_STATUS_RENDERER);
+    }
+
+    /** PatientDataSource поверх снимка модели. */
+    static JRDataSource dataSource(TableModel model) {
+        return (JRDataSource) invoke(NEW_DATA_SOURCE, invoke(SNAPSHOT_OF, model));
+    }
+
+    private static Object invoke(MethodHandle handle, Object... args) {
+        try {
+            return handle.invokeWithArguments(args);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name, true, Clinic.class.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Нет класса приложения " + name + " (собирать с -Pjmh)", ex);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object loadMode(String name) {
+        return Enum.valueOf((Class) LOAD_MODE, name);
+    }
+}
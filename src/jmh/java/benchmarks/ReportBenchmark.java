@@ -0,0 +1,91 @@
+package benchmarks;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Компиляция, заполнение и экспорт отчётов {@code ClinicPDF.jrxml} (в PDF) и
+ * {@code ClinicHTML.jrxml} (в HTML).
+ * <p>
+ * Шаблоны ищутся в каталоге из системного свойства {@code clinic.reports}
+ * (по умолчанию {@code src/docs}, т.е. запуск из корня проекта). Размеры по умолчанию
+ * меньше, чем у остальных бенчмарков: отчёт на миллион строк — десятки тысяч страниц;
+ * большие размеры задаются через {@code -p size=...}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ReportBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    @Param({"ClinicPDF", "ClinicHTML"})
+    String template;
+
+    private String reportPath;
+    private AbstractTableModel table;
+    private JasperReport report;
+    private JasperPrint print;
+    private File htmlOutput;
+
+    @Setup
+    public void setUp() throws JRException, IOException {
+        reportPath = new File(System.getProperty("clinic.reports", "src/docs"), template + ".jrxml").getPath();
+        table = Clinic.newModel(Clinic.rows(size));
+        report = JasperCompileManager.compileReport(reportPath);
+        print = JasperFillManager.fillReport(report, new HashMap<>(), Clinic.dataSource(table));
+        htmlOutput = File.createTempFile("clinic-bench", ".html");
+    }
+
+    @TearDown
+    public void tearDown() {
+        htmlOutput.delete();
+        new File(htmlOutput.getPath() + "_files").delete();
+    }
+
+    @Benchmark
+    public JasperReport compile() throws JRException {
+        return JasperCompileManager.compileReport(reportPath);
+    }
+
+    @Benchmark
+    public JasperPrint fill() throws JRException {
+        return JasperFillManager.fillReport(report, new HashMap<>(), Clinic.dataSource(table));
+    }
+
+    @Benchmark
+    public void export() throws JRException {
+        if ("ClinicHTML".equals(template)) {
+            JasperExportManager.exportReportToHtmlFile(print, htmlOutput.getPath());
+        } else {
+            JasperExportManager.exportReportToPdfStream(print, OutputStream.nullOutputStream());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сортировка по колонке даты и поиск подстроки в колонке имени.
+ * Для сравнения у каждой операции есть «наивный» вариант: сортировка с разбором даты при
+ * каждом сравнении и поиск перебором текста всех ячеек.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class TableBenchmark {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final List<RowSorter.SortKey> BY_DATE =
+            Collections.singletonList(new RowSorter.SortKey(Clinic.DATE, SortOrder.ASCENDING));
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    @Param({"ova", "иван смирнов"})
+    String query;
+
+    private AbstractTableModel table;
+
+    @Setup
+    public void setUp() {
+        table = Clinic.newModel(Clinic.rows(size));
+    }
+
+    @Benchmark
+    public int sortByDate() {
+        RowSorter<?> sorter = Clinic.newSorter(table);
+        sorter.setSortKeys(BY_DATE);
+        return sorter.convertRowIndexToModel(0);
+    }
+
+    @Benchmark
+    public int sortByDateParsing() {
+        TableRowSorter<TableModel> sorter = new TableRowSorter<>(table);
+        sorter.setComparator(Clinic.DATE, Comparator.comparing((String date) -> LocalDate.parse(date, DATE_FORMAT)));
+        sorter.setSortKeys(BY_DATE);
+        return sorter.convertRowIndexToModel(0);
+    }
+
+    @Benchmark
+    public int searchIndexed() {
+        return Clinic.findRows(table, Clinic.NAME, query).cardinality();
+    }
+
+    @Benchmark
+    public int searchScan() {
+        String lowerQuery = query.toLowerCase();
+        int found = 0;
+        for (int row = 0; row < table.getRowCount(); row++) {
+            if (table.getValueAt(row, Clinic.NAME).toString().toLowerCase().contains(lowerQuery)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
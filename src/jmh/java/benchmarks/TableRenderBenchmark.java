@@ -0,0 +1,156 @@
+package benchmarks;
+
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableModel;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Замер отрисовки таблицы при быстрой прокрутке (без окна, можно запускать с
+ * {@code -Djava.awt.headless=true}). Не бенчмарк JMH: время кадра меряется вручную, запуск —
+ * {@code java -cp target/benchmarks.jar benchmarks.TableRenderBenchmark} после сборки с {@code -Pjmh}.
+ * <p>
+ * Таблица заполняется строками {@code DatasetGenerator} и «прокручивается» рывками: каждый кадр рисует
+ * видимую область в изображение, сдвигаясь сразу на несколько экранов. Сравниваются прежний
+ * способ раскраски статуса (переопределённый {@code prepareRenderer} со сравнением строк для
+ * каждой ячейки) и {@code StatusCellRenderer}. Для каждого варианта печатаются перцентили
+ * времени кадра и объём памяти, выделенной за кадр (если JVM умеет его считать): отдельно
+ * для полной отрисовки и только для подготовки отрисовщиков видимых ячеек — в полной
+ * отрисовке основная доля времени и памяти приходится на вывод текста средствами Java2D.
+ * <p>
+ * Аргументы: {@code [строк] [кадров]}, по умолчанию 1000000 и 2000.
+ */
+public class TableRenderBenchmark {
+
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 600;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        TableModel model = Clinic.newModel(Clinic.rows(rows));
+        System.out.println("Строк: " + rows + ", кадров: " + frames + ", область " + WIDTH + "x" + HEIGHT);
+
+        // Каждый вариант дважды: первый прогон — прогрев
+        for (int pass = 0; pass < 2; pass++) {
+            boolean report = pass == 1;
+            run("prepareRenderer", legacyTable(model), frames, report);
+            run("StatusCellRenderer", rendererTable(model), frames, report);
+        }
+    }
+
+    // Как было в GUI до StatusCellRenderer
+    private static JTable legacyTable(TableModel model) {
+        return new JTable(model) {
+            @Override
+            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+                Component cell = super.prepareRenderer(renderer, row, column);
+                if (column == 5) {
+                    String status = (String) getValueAt(row, column);
+                    switch (status) {
+                        case "Accepted":
+                            cell.setBackground(Color.GREEN);
+                            break;
+                        case "Waiting":
+                            cell.setBackground(Color.YELLOW);
+                            break;
+                        case "Canceled":
+                            cell.setBackground(Color.RED);
+                            break;
+                        default:
+                            cell.setBackground(Color.WHITE);
+                            break;
+                    }
+                } else {
+                    cell.setBackground(Color.WHITE);
+                }
+                return cell;
+            }
+        };
+    }
+
+    private static JTable rendererTable(TableModel model) {
+        JTable table = new JTable(model);
+        table.setDefaultRenderer(String.class, Clinic.newStatusRenderer());
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void run(String name, JTable table, int frames, boolean report) {
+        table.setRowSorter((RowSorter<? extends TableModel>) Clinic.newSorter(table.getModel()));
+        int height = table.getRowCount() * table.getRowHeight();
+        table.setSize(WIDTH, height);
+        table.doLayout();
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int step = HEIGHT * 3 + table.getRowHeight() / 2; // «рывок» колесом: несколько экранов за кадр
+        int range = Math.max(1, height - HEIGHT);
+        int visibleRows = HEIGHT / table.getRowHeight() + 1;
+
+        // Полная отрисовка видимой области
+        long[] times = new long[frames];
+        long allocatedBefore = allocatedBytes();
+        int y = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long start = System.nanoTime();
+            Graphics2D g = image.createGraphics();
+            g.translate(0, -y);
+            g.setClip(0, y, WIDTH, HEIGHT);
+            table.paint(g);
+            g.dispose();
+            times[frame] = System.nanoTime() - start;
+            y = (y + step) % range;
+        }
+        long paintAllocated = allocatedBytes() - allocatedBefore;
+        long[] paintTimes = times.clone();
+
+        // Только подготовка отрисовщиков тех же ячеек (то, что меняется между вариантами)
+        allocatedBefore = allocatedBytes();
+        y = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long start = System.nanoTime();
+            int first = y / table.getRowHeight();
+            int last = Math.min(table.getRowCount(), first + visibleRows);
+            for (int row = first; row < last; row++) {
+                for (int col = 0; col < table.getColumnCount(); col++) {
+                    table.prepareRenderer(table.getCellRenderer(row, col), row, col);
+                }
+            }
+            times[frame] = System.nanoTime() - start;
+            y = (y + step) % range;
+        }
+        long prepareAllocated = allocatedBytes() - allocatedBefore;
+        if (report) {
+            print(name + ": кадр", paintTimes, paintAllocated);
+            print(name + ": ячейки", times, prepareAllocated);
+        }
+    }
+
+    private static void print(String name, long[] times, long allocated) {
+        Arrays.sort(times);
+        System.out.printf("%-32s p50 %7.1f мкс, p90 %7.1f мкс, p99 %7.1f мкс, max %8.1f мкс, память за кадр: %s%n",
+                name, percentile(times, 0.50), percentile(times, 0.90), percentile(times, 0.99),
+                times[times.length - 1] / 1000.0,
+                allocated >= 0 ? allocated / times.length + " байт" : "н/д");
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1000.0;
+    }
+
+    // Сколько байт выделил текущий поток (-1, если JVM этого не поддерживает)
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
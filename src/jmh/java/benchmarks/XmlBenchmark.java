@@ -0,0 +1,72 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка XML (потоковая и через DOM) и сохранение таблицы в XML.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class XmlBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int size;
+
+    private AbstractTableModel table;
+    private File input;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        table = Clinic.newModel(Clinic.rows(size));
+        input = File.createTempFile("clinic-bench-in", ".xml");
+        output = File.createTempFile("clinic-bench-out", ".xml");
+        Clinic.write(table, input);
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public int loadStreaming() {
+        AbstractTableModel model = Clinic.newModel();
+        Clinic.load(model, input, false);
+        return model.getRowCount();
+    }
+
+    @Benchmark
+    public int loadDom() {
+        AbstractTableModel model = Clinic.newModel();
+        Clinic.load(model, input, true);
+        return model.getRowCount();
+    }
+
+    @Benchmark
+    public long save() {
+        Clinic.write(table, output);
+        return output.length();
+    }
+}
@@ -0,0 +1,72 @@
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Вспомогательные методы для дат приёма в формате dd.MM.yyyy.
+ * Дата переводится в номер дня от 1970-01-01 (epoch day), который удобно хранить в int и сравнивать.
+ */
+public final class AppointmentDates {
+
+    /** Значение для строк, которые не удалось разобрать как дату. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private AppointmentDates() {
+    }
+
+    /**
+     * Разбирает дату в формате dd.MM.yyyy (день и месяц могут быть из одной цифры).
+     * @param text строка с датой
+     * @return номер дня от 1970-01-01 или {@link #NO_DATE}, если строка не является корректной датой
+     */
+    public static int parse(String text) {
+        if (text == null) {
+            return NO_DATE;
+        }
+        int firstDot = text.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : text.indexOf('.', firstDot + 1);
+        if (firstDot < 1 || firstDot > 2 || secondDot - firstDot < 2 || secondDot - firstDot > 3
+                || text.length() - secondDot != 5) {
+            return NO_DATE;
+        }
+        int day = digits(text, 0, firstDot);
+        int month = digits(text, firstDot + 1, secondDot);
+        int year = digits(text, secondDot + 1, text.length());
+        if (day < 0 || month < 0 || year < 0) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay(); // не допускает 32-й день, 13-й месяц и пр.
+        } catch (DateTimeException ex) {
+            return NO_DATE;
+        }
+    }
+
+    /**
+     * Форматирует номер дня обратно в строку dd.MM.yyyy.
+     */
+    public static String format(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        StringBuilder sb = new StringBuilder(10);
+        if (date.getDayOfMonth() < 10) {
+            sb.append('0');
+        }
+        sb.append(date.getDayOfMonth()).append('.');
+        if (date.getMonthValue() < 10) {
+            sb.append('0');
+        }
+        sb.append(date.getMonthValue()).append('.').append(date.getYear());
+        return sb.toString();
+    }
+
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
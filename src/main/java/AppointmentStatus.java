@@ -0,0 +1,31 @@
+/**
+ * Известные статусы приёма. Порядковый номер константы совпадает с кодом статуса
+ * в {@link PatientTableModel}, так что статус строки определяется без сравнения строк.
+ */
+public enum AppointmentStatus {
+    ACCEPTED("Accepted"),
+    WAITING("Waiting"),
+    CANCELED("Canceled");
+
+    private static final AppointmentStatus[] VALUES = values();
+
+    private final String label;
+
+    AppointmentStatus(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Текст статуса, как он хранится в XML и показывается в таблице.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Статус по коду из модели или {@code null}, если код соответствует нестандартному статусу.
+     */
+    public static AppointmentStatus fromCode(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+}
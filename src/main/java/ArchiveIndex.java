@@ -0,0 +1,343 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отсортированный индекс архива на диске: номера строк двоичного снимка в порядке
+ * сортировки по имени пациента или по дате приёма.
+ * <p>
+ * Индекс лежит рядом со снимком ({@code <снимок>.name.idx}, {@code <снимок>.date.idx})
+ * и читается страницами через {@link PagedIntFile}. Строится подсчётом (counting sort):
+ * различные значения колонки упорядочиваются внешней сортировкой слиянием (имена — как в таблице,
+ * через {@link Collator}, даты — как {@link DateSortKey}), затем строки раскладываются по месту
+ * своего значения за два последовательных прохода по снимку. Ключи сортировки пишутся на диск
+ * сериями ограниченного размера, а счётчики значений лежат в отображённом временном файле,
+ * поэтому объём кучи не зависит от числа различных значений; сам индекс пишется в отображённый файл.
+ * Индекс считается устаревшим, если размер или время изменения снимка не совпадают с записанными в нём.
+ */
+public class ArchiveIndex implements Closeable {
+
+    private static final int MAGIC = 0x434C4E49; // "CLNI"
+    // сигнатура, колонка, строки, размер и время изменения снимка (нс)
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+    private static final int PAGE_INTS = 4096;
+    private static final int MAX_PAGES = 64;
+    /** Размер серии ключей сортировки в памяти при построении, байт (примерно). */
+    static final int RUN_BYTES = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final PagedIntFile rows;
+
+    private ArchiveIndex(FileChannel channel, int rowCount) {
+        this.channel = channel;
+        this.rows = new PagedIntFile(channel, HEADER_SIZE, rowCount, PAGE_INTS, MAX_PAGES);
+    }
+
+    /**
+     * Файл индекса снимка по колонке.
+     * @param snapshotFile файл двоичного снимка
+     * @param column {@link PatientTableModel#NAME} или {@link PatientTableModel#DATE}
+     */
+    public static File fileFor(File snapshotFile, int column) {
+        return new File(snapshotFile.getPath() + (column == PatientTableModel.DATE ? ".date.idx" : ".name.idx"));
+    }
+
+    /**
+     * Открывает готовый индекс, если он есть и построен по текущей версии снимка.
+     * @param snapshotFile файл двоичного снимка
+     * @param column колонка сортировки
+     * @param rowCount число строк снимка
+     * @return индекс или {@code null}, если его нужно построить
+     */
+    public static ArchiveIndex open(File snapshotFile, int column, int rowCount) {
+        File file = fileFor(snapshotFile, column);
+        if (!file.isFile() || file.length() != HEADER_SIZE + 4L * rowCount) {
+            return null;
+        }
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // читаем заголовок
+            }
+            if (header.getInt(0) != MAGIC || header.getInt(4) != column || header.getInt(8) != rowCount
+                    || header.getLong(12) != snapshotFile.length()
+                    || header.getLong(20) != BinarySnapshot.modifiedNanos(snapshotFile)) {
+                channel.close();
+                return null;
+            }
+            return new ArchiveIndex(channel, rowCount);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Строит индекс снимка по колонке (долго для больших архивов — вызывать в фоновом потоке;
+     * прерывание потока отменяет построение).
+     * @param snapshotFile файл двоичного снимка
+     * @param column {@link PatientTableModel#NAME} или {@link PatientTableModel#DATE}
+     * @return время построения, мс
+     * @throws IOException при ошибке чтения снимка или записи индекса
+     */
+    public static long build(File snapshotFile, int column) throws IOException {
+        return build(snapshotFile, column, RUN_BYTES);
+    }
+
+    static long build(File snapshotFile, int column, int runBytes) throws IOException {
+        long start = System.nanoTime();
+        long length = snapshotFile.length();
+        long modified = BinarySnapshot.modifiedNanos(snapshotFile);
+        try (PagedSnapshotStore store = PagedSnapshotStore.open(snapshotFile)) {
+            int rowCount = store.getRowCount();
+            Path target = fileFor(snapshotFile, column).getAbsoluteFile().toPath();
+            Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            Path counts = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".cnt");
+            try {
+                try (FileChannel countChannel = FileChannel.open(counts, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    // Для каждого кода словаря: сначала число его строк, затем следующее свободное место в индексе
+                    IntBuffer next = countChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            4L * store.getDictionarySize(column)).asIntBuffer();
+
+                    // Первый проход: сколько строк у каждого значения
+                    for (int row = 0; row < rowCount; row++) {
+                        checkInterrupted(row);
+                        int code = store.getCode(row, column);
+                        next.put(code, next.get(code) + 1);
+                    }
+                    // Значения по порядку: место значения в индексе — сумма строк предыдущих
+                    int position = 0;
+                    try (SortedCodes codes = SortedCodes.sort(store, column, target.getParent(), runBytes)) {
+                        for (int code = codes.next(); code >= 0; code = codes.next()) {
+                            int count = next.get(code);
+                            next.put(code, position);
+                            position += count;
+                        }
+                    }
+
+                    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        MappedByteBuffer index = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 4L * rowCount);
+                        index.putInt(MAGIC).putInt(column).putInt(rowCount).putLong(length).putLong(modified);
+
+                        // Второй проход: каждая строка на свободное место своего значения
+                        for (int row = 0; row < rowCount; row++) {
+                            checkInterrupted(row);
+                            int code = store.getCode(row, column);
+                            int free = next.get(code);
+                            next.put(code, free + 1);
+                            index.putInt(HEADER_SIZE + 4 * free, row);
+                        }
+                        index.force();
+                    }
+                }
+                XMLfile.replaceWithTemp(tmp, target);
+            } finally {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(counts);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void checkInterrupted(int i) throws InterruptedIOException {
+        if ((i & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Построение индекса отменено");
+        }
+    }
+
+    // Ключ сортировки значения в виде байтов, сравниваемых без знака.
+    // Имена — ключ Collator (как у сортировщика таблицы для строковых колонок); даты — в порядке
+    // DateSortKey: корректные по номеру дня, за ними некорректные по тексту (UTF-16BE — порядок String.compareTo)
+    private static byte[] sortKey(Collator collator, int column, String value) {
+        if (column != PatientTableModel.DATE) {
+            return collator.getCollationKey(value).toByteArray();
+        }
+        int epochDay = AppointmentDates.parse(value);
+        if (epochDay != AppointmentDates.NO_DATE) {
+            return ByteBuffer.allocate(5).put((byte) 0).putInt(epochDay ^ Integer.MIN_VALUE).array();
+        }
+        ByteBuffer key = ByteBuffer.allocate(1 + 2 * value.length()).put((byte) 1);
+        for (int i = 0; i < value.length(); i++) {
+            key.putChar(value.charAt(i));
+        }
+        return key.array();
+    }
+
+    private static int compareKeys(byte[] a, int aCode, byte[] b, int bCode) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xFF) - (b[i] & 0xFF);
+            }
+        }
+        // Равные значения — в порядке кодов, как при устойчивой сортировке
+        return a.length != b.length ? a.length - b.length : Integer.compare(aCode, bCode);
+    }
+
+    // Коды словаря колонки в порядке сортировки значений (внешняя сортировка слиянием).
+    // Ключи с кодами набираются в серию примерно до runBytes байт, серия сортируется и пишется
+    // во временный файл; затем серии сливаются, и в памяти остаётся по текущему ключу на серию.
+    // Если все ключи поместились в одну серию, она отдаётся прямо из памяти.
+    private static final class SortedCodes implements Closeable {
+        private final List<Run> runs = new ArrayList<>();
+        private final PriorityQueue<Run> queue = new PriorityQueue<>(
+                (a, b) -> compareKeys(a.key, a.code, b.key, b.code));
+        private List<Entry> memory;
+        private int memoryNext;
+
+        static SortedCodes sort(PagedSnapshotStore store, int column, Path dir, int runBytes) throws IOException {
+            SortedCodes sorted = new SortedCodes();
+            try {
+                Collator collator = Collator.getInstance();
+                List<Entry> run = new ArrayList<>();
+                long runSize = 0;
+                int size = store.getDictionarySize(column);
+                for (int code = 0; code < size; code++) {
+                    checkInterrupted(code);
+                    byte[] key = sortKey(collator, column, store.getDictionaryValue(column, code));
+                    run.add(new Entry(key, code));
+                    runSize += key.length + 48; // ключ и накладные расходы объектов
+                    if (runSize >= runBytes) {
+                        sorted.runs.add(Run.write(run, dir));
+                        run.clear();
+                        runSize = 0;
+                    }
+                }
+                if (sorted.runs.isEmpty()) {
+                    run.sort((a, b) -> compareKeys(a.key, a.code, b.key, b.code));
+                    sorted.memory = run;
+                    return sorted;
+                }
+                if (!run.isEmpty()) {
+                    sorted.runs.add(Run.write(run, dir));
+                }
+                for (Run r : sorted.runs) {
+                    if (r.advance()) {
+                        sorted.queue.add(r);
+                    }
+                }
+                return sorted;
+            } catch (IOException | RuntimeException ex) {
+                sorted.close();
+                throw ex;
+            }
+        }
+
+        // Следующий код или -1, если коды кончились
+        int next() throws IOException {
+            if (memory != null) {
+                return memoryNext < memory.size() ? memory.get(memoryNext++).code : -1;
+            }
+            Run run = queue.poll();
+            if (run == null) {
+                return -1;
+            }
+            int code = run.code;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return code;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final byte[] key;
+        final int code;
+
+        Entry(byte[] key, int code) {
+            this.key = key;
+            this.code = code;
+        }
+    }
+
+    // Отсортированная серия во временном файле: длина ключа, ключ, код
+    private static final class Run implements Closeable {
+        private final Path file;
+        private final DataInputStream in;
+        private int remaining;
+        byte[] key;
+        int code;
+
+        private Run(Path file, int count) throws IOException {
+            this.file = file;
+            this.remaining = count;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        }
+
+        static Run write(List<Entry> entries, Path dir) throws IOException {
+            entries.sort((a, b) -> compareKeys(a.key, a.code, b.key, b.code));
+            Path file = Files.createTempFile(dir, "index-run", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+                    for (Entry entry : entries) {
+                        out.writeInt(entry.key.length);
+                        out.write(entry.key);
+                        out.writeInt(entry.code);
+                    }
+                }
+                return new Run(file, entries.size());
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(file);
+                throw ex;
+            }
+        }
+
+        // Читает следующую запись серии; false, если серия кончилась
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            key = new byte[in.readInt()];
+            in.readFully(key);
+            code = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Номер строки снимка на позиции {@code position} в порядке сортировки.
+     */
+    public int getRow(int position) {
+        return rows.get(position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
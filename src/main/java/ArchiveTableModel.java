@@ -0,0 +1,82 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Модель таблицы только для чтения поверх архива на диске ({@link PagedSnapshotStore}).
+ * <p>
+ * Строки не загружаются в память: {@code JTable} запрашивает только видимые ячейки,
+ * а они читаются из файла через кэш страниц. Сортировка выполняется не сортировщиком
+ * таблицы (ему пришлось бы держать и сравнивать все строки), а самой моделью: номер строки
+ * на экране переводится в номер строки файла через отсортированный индекс ({@link ArchiveIndex}).
+ */
+public class ArchiveTableModel extends AbstractTableModel {
+
+    private final PagedSnapshotStore store;
+    private ArchiveIndex order;     // null — строки в порядке файла
+    private boolean descending;
+
+    /**
+     * @param store открытый архив
+     */
+    public ArchiveTableModel(PagedSnapshotStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public int getRowCount() {
+        return store.getRowCount();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return PatientTableModel.COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return PatientTableModel.COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false; // архив только для чтения
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return store.getValueAt(toFileRow(rowIndex), columnIndex);
+    }
+
+    /**
+     * Номер строки в файле архива для строки таблицы (с учётом сортировки).
+     * @param rowIndex номер строки в таблице
+     */
+    public int toFileRow(int rowIndex) {
+        if (order == null) {
+            return rowIndex;
+        }
+        return order.getRow(descending ? store.getRowCount() - 1 - rowIndex : rowIndex);
+    }
+
+    /**
+     * Задаёт порядок строк.
+     * @param order отсортированный индекс или {@code null} для порядка файла
+     * @param descending по убыванию (обход индекса с конца)
+     */
+    public void setOrder(ArchiveIndex order, boolean descending) {
+        this.order = order;
+        this.descending = descending;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Архив, из которого читаются строки.
+     */
+    public PagedSnapshotStore getStore() {
+        return store;
+    }
+}
@@ -0,0 +1,186 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Окно просмотра архива (только чтение): таблица поверх {@link ArchiveTableModel}, которая
+ * читает строки с диска по мере прокрутки, поэтому открывается мгновенно и не зависит
+ * от размера файла. Сортировка по имени и по дате — через индексы на диске
+ * ({@link ArchiveIndex}); если индекса ещё нет, он строится в фоне.
+ */
+public class ArchiveWindow extends JFrame {
+
+    private static final String[] SORT_TYPES = {"Без сортировки", "По имени", "По дате"};
+
+    private final PagedSnapshotStore store;
+    private final ArchiveTableModel tableModel;
+    private final Map<Integer, ArchiveIndex> indexes = new HashMap<>();
+    private final JTable dataTable;
+    private final JComboBox<String> sortType = new JComboBox<>(SORT_TYPES);
+    private final JCheckBox descendingBox = new JCheckBox("По убыванию");
+    private final JLabel info = new JLabel();
+    private final Timer infoTimer;
+    private SwingWorker<Long, Void> indexBuilder;
+    private String indexInfo; // итог последнего построения индекса для строки состояния
+
+    /**
+     * @param store открытый архив (закрывается вместе с окном)
+     */
+    public ArchiveWindow(PagedSnapshotStore store) {
+        super("Архив - " + store.getFile().getName());
+        this.store = store;
+        this.tableModel = new ArchiveTableModel(store);
+        setSize(1200, 640);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        dataTable = new JTable(tableModel);
+        dataTable.setAutoCreateRowSorter(false); // сортирует модель по индексам
+        dataTable.setDefaultRenderer(String.class, new StatusCellRenderer());
+        add(new JScrollPane(dataTable), BorderLayout.CENTER);
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.add(new JLabel("Сортировка:"));
+        topPanel.add(sortType);
+        topPanel.add(descendingBox);
+        add(topPanel, BorderLayout.NORTH);
+        add(info, BorderLayout.SOUTH);
+
+        sortType.addActionListener(e -> applySort());
+        descendingBox.addActionListener(e -> applySort());
+
+        // Щелчок по заголовку имени или даты сортирует по нему, повторный — меняет направление
+        dataTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = dataTable.convertColumnIndexToModel(dataTable.columnAtPoint(e.getPoint()));
+                int type = column == PatientTableModel.NAME ? 1 : column == PatientTableModel.DATE ? 2 : 0;
+                if (type == 0) {
+                    return;
+                }
+                if (sortType.getSelectedIndex() == type) {
+                    descendingBox.setSelected(!descendingBox.isSelected());
+                    applySort();
+                } else {
+                    descendingBox.setSelected(false);
+                    sortType.setSelectedIndex(type); // вызовет applySort
+                }
+            }
+        });
+
+        infoTimer = new Timer(1000, e -> updateInfo(null));
+        infoTimer.start();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                close();
+            }
+        });
+        updateInfo(null);
+    }
+
+    /**
+     * Открывает окно архива для двоичного снимка (или для XML-файла, рядом с которым он лежит).
+     * @param parent окно для сообщений об ошибках
+     * @param file файл {@code .bin} или {@code .xml}
+     */
+    public static void open(Component parent, File file) {
+        File snapshotFile = file.getName().endsWith(".bin") ? file : BinarySnapshot.fileFor(file);
+        if (!snapshotFile.isFile()) {
+            JOptionPane.showMessageDialog(parent, "Для архива нужен двоичный снимок: " + snapshotFile.getName()
+                            + "\n(создаётся при сохранении или командой BinarySnapshot toBinary)",
+                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            new ArchiveWindow(PagedSnapshotStore.open(snapshotFile)).setVisible(true);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(parent, "Ошибка открытия архива:\n" + ex.getMessage(),
+                    "Ошибка", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void applySort() {
+        int selected = sortType.getSelectedIndex();
+        if (selected == 0) {
+            tableModel.setOrder(null, false);
+            return;
+        }
+        int column = selected == 1 ? PatientTableModel.NAME : PatientTableModel.DATE;
+        ArchiveIndex index = indexes.get(column);
+        if (index == null) {
+            index = ArchiveIndex.open(store.getFile(), column, store.getRowCount());
+            if (index == null) {
+                buildIndex(column);
+                return;
+            }
+            indexes.put(column, index);
+        }
+        tableModel.setOrder(index, descendingBox.isSelected());
+    }
+
+    // Строит индекс в фоне и применяет сортировку, если она всё ещё выбрана
+    private void buildIndex(int column) {
+        if (indexBuilder != null) {
+            indexBuilder.cancel(true);
+        }
+        updateInfo("строится индекс...");
+        indexBuilder = new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                return ArchiveIndex.build(store.getFile(), column);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || !isDisplayable()) {
+                    return;
+                }
+                indexBuilder = null;
+                try {
+                    indexInfo = "индекс " + (column == PatientTableModel.DATE ? "по дате" : "по имени")
+                            + " построен за " + get() + " мс";
+                    applySort();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(ArchiveWindow.this, "Ошибка построения индекса:\n"
+                            + cause.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+                }
+                updateInfo(null);
+            }
+        };
+        indexBuilder.execute();
+    }
+
+    private void updateInfo(String extra) {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        info.setText(" Строк: " + store.getRowCount() + "; " + store.getCacheStats() + "; куча: " + usedMb + " МБ"
+                + (extra != null ? "; " + extra : indexBuilder != null ? "; строится индекс..." : "")
+                + (indexInfo != null ? "; " + indexInfo : ""));
+    }
+
+    private void close() {
+        infoTimer.stop();
+        if (indexBuilder != null) {
+            indexBuilder.cancel(true);
+        }
+        try {
+            for (ArchiveIndex index : indexes.values()) {
+                index.close();
+            }
+            store.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Пакетное построение отчётов без окна (режим {@code ClinicApp --batch}), например для ночной выгрузки.
+ * <pre>
+ * java -cp ... ClinicApp --batch -t src/docs/ClinicPDF.jrxml -f pdf,csv -o reports data1.xml data2.xml
+ * </pre>
+ * Файлы обрабатываются параллельно ({@link ReportGenerator#generateBatch}): шаблон компилируется
+ * один раз, каждый XML-файл читается в снимок, отчёт по нему заполняется один раз и экспортируется
+ * во все заданные форматы; ошибка в одном файле не останавливает остальные. Выходной файл
+ * называется по XML-файлу ({@code data1.pdf}); если шаблонов несколько — по XML-файлу и шаблону
+ * ({@code data1-ClinicPDF.pdf}). Если имена совпадают (одноимённые файлы из разных каталогов),
+ * к следующим добавляется номер ({@code data1-2.pdf}), чтобы потоки не писали в один файл.
+ * <p>
+ * Окно и AWT не инициализируются (включается {@code java.awt.headless}), так что запуск
+ * быстрый и не требует рабочего стола. По каждому файлу выводится строка итога с числом строк
+ * и временем чтения и отчётов. Код возврата: 0 — всё построено, 1 — были ошибки, 2 — неверные параметры.
+ */
+public class BatchReport {
+
+    static final String USAGE = "Использование: ClinicApp --batch -t шаблон.jrxml [-t ...] [-f pdf,html,csv,xlsx]"
+            + " [-o каталог] [-j потоков] файл.xml...\n"
+            + "  -t, --template  шаблон отчёта (можно несколько)\n"
+            + "  -f, --formats   форматы через запятую (по умолчанию pdf)\n"
+            + "  -o, --output    каталог для отчётов (по умолчанию текущий)\n"
+            + "  -j, --jobs      сколько файлов обрабатывать одновременно (по умолчанию число ядер)";
+
+    private final List<File> templates = new ArrayList<>();
+    private final List<ReportGenerator.ReportFormat> formats = new ArrayList<>();
+    private final List<File> inputs = new ArrayList<>();
+    private File outputDir = new File(".");
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    // Имена выходных файлов без расширения: шаблон -> XML-файл -> имя
+    private final Map<File, Map<File, String>> outputNames = new HashMap<>();
+
+    /**
+     * Разбирает параметры и строит отчёты.
+     * @param args параметры после {@code --batch}
+     * @return код возврата процесса
+     */
+    public static int run(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true"); // до первого обращения к AWT (шрифты в JasperReports)
+        }
+        BatchReport batch = new BatchReport();
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        return batch.buildAll();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("-")) {
+                inputs.add(new File(arg));
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Нет значения для " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "-t":
+                case "--template":
+                    templates.add(new File(value));
+                    break;
+                case "-f":
+                case "--formats":
+                    for (String format : value.split(",")) {
+                        try {
+                            formats.add(ReportGenerator.ReportFormat.valueOf(format.trim().toUpperCase(Locale.ROOT)));
+                        } catch (IllegalArgumentException ex) {
+                            throw new IllegalArgumentException("Неизвестный формат: " + format);
+                        }
+                    }
+                    break;
+                case "-o":
+                case "--output":
+                    outputDir = new File(value);
+                    break;
+                case "-j":
+                case "--jobs":
+                    try {
+                        jobs = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        jobs = 0;
+                    }
+                    if (jobs < 1) {
+                        throw new IllegalArgumentException("Число потоков должно быть положительным: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        if (templates.isEmpty()) {
+            throw new IllegalArgumentException("Не задан шаблон отчёта (-t)");
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Не заданы XML-файлы");
+        }
+        for (File template : templates) {
+            if (!template.isFile()) {
+                throw new IllegalArgumentException("Файл отчета не найден: " + template);
+            }
+        }
+        if (formats.isEmpty()) {
+            formats.add(ReportGenerator.ReportFormat.PDF);
+        }
+        assignOutputNames();
+    }
+
+    // Имя по XML-файлу (и шаблону, если их несколько); совпавшие имена получают номер.
+    // Сравнение без учёта регистра — на некоторых файловых системах data.pdf и DATA.pdf один файл
+    private void assignOutputNames() {
+        rejectDuplicates(templates, "Шаблон");
+        rejectDuplicates(inputs, "XML-файл");
+        Set<String> used = new HashSet<>();
+        List<File[]> clashes = new ArrayList<>();
+        for (File template : templates) {
+            Map<File, String> names = new HashMap<>();
+            outputNames.put(template, names);
+            for (File input : inputs) {
+                String name = baseName(input, template);
+                if (used.add(name.toLowerCase(Locale.ROOT))) {
+                    names.put(input, name);
+                } else {
+                    clashes.add(new File[]{template, input});
+                }
+            }
+        }
+        for (File[] clash : clashes) {
+            String base = baseName(clash[1], clash[0]);
+            int number = 2;
+            while (!used.add((base + "-" + number).toLowerCase(Locale.ROOT))) {
+                number++;
+            }
+            outputNames.get(clash[0]).put(clash[1], base + "-" + number);
+        }
+    }
+
+    private static void rejectDuplicates(List<File> files, String what) {
+        Set<File> seen = new HashSet<>();
+        for (File file : files) {
+            if (!seen.add(file.getAbsoluteFile().toPath().normalize().toFile())) {
+                throw new IllegalArgumentException(what + " указан дважды: " + file);
+            }
+        }
+    }
+
+    private String baseName(File input, File template) {
+        String name = input.getName().replaceFirst("\\.[^.]*$", "");
+        if (templates.size() > 1) {
+            name += "-" + template.getName().replaceFirst("\\.[^.]*$", "");
+        }
+        return name;
+    }
+
+    private int buildAll() {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Не удалось создать каталог: " + outputDir);
+            return 1;
+        }
+        long start = System.nanoTime();
+        int failed = 0;
+        long totalRows = 0;
+        ReportGenerator generator = new ReportGenerator();
+        for (File template : templates) {
+            List<ReportGenerator.BatchResult> results;
+            try {
+                results = generator.generateBatch(template.getPath(), inputs, input -> outputsFor(input, template), jobs);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                System.out.println("FAILED " + template + ": " + ex.getMessage());
+                failed += inputs.size();
+                continue;
+            }
+            for (ReportGenerator.BatchResult result : results) {
+                if (result.getFailure() != null) {
+                    System.out.println("FAILED " + result.getXmlFile() + ": " + result.getFailure().getMessage());
+                    failed++;
+                } else {
+                    System.out.printf("OK %s: строк %d, чтение %d мс, отчёты %d мс -> %s%n", result.getXmlFile(),
+                            result.getRowCount(), result.getReadMillis(), result.getReportMillis(),
+                            String.join(", ", result.getOutputs()));
+                    totalRows += result.getRowCount();
+                }
+            }
+        }
+        System.out.printf("Итого: файлов %d, отчётов с ошибками %d, строк %d, потоков %d, %d мс%n", inputs.size(),
+                failed, totalRows, jobs, (System.nanoTime() - start) / 1_000_000);
+        return failed == 0 ? 0 : 1;
+    }
+
+    // Выходные файлы по XML-файлу и шаблону: data1.pdf или, если шаблонов несколько, data1-ClinicPDF.pdf
+    private Map<ReportGenerator.ReportFormat, String> outputsFor(File input, File template) {
+        String name = outputNames.get(template).get(input);
+        Map<ReportGenerator.ReportFormat, String> paths = new EnumMap<>(ReportGenerator.ReportFormat.class);
+        for (ReportGenerator.ReportFormat format : formats) {
+            paths.put(format, new File(outputDir, name + "." + format.getExtension()).getPath());
+        }
+        return paths;
+    }
+}
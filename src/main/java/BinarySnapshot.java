@@ -0,0 +1,391 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Двоичный снимок таблицы пациентов — быстрый для открытия двойник XML-файла
+ * ({@code mainReport.xml} → {@code mainReport.bin}).
+ * <p>
+ * Формат (порядок байт big-endian):
+ * <ul>
+ *     <li>заголовок: сигнатура, версия, число колонок и строк, смещения разделов, размер и время
+ *     изменения XML-файла, из которого записан снимок;</li>
+ *     <li>для каждой колонки словарь различных значений: их число, таблица смещений
+ *     и сами строки в UTF-8;</li>
+ *     <li>записи строк фиксированной ширины — по одному коду словаря (int) на колонку;</li>
+ *     <li>отметка журнала изменений (если есть, см. {@link ChangeJournal}).</li>
+ * </ul>
+ * Файл открывается через {@link FileChannel#map}: при открытии читается только заголовок,
+ * коды строк берутся прямо из отображённой памяти, а строки словаря декодируются при первом
+ * обращении. Снимок пишется вместе с XML ({@link XMLfile#writeXMLWithSnapshot}) и используется
+ * вместо него, только если размер и время изменения XML совпадают с записанными в снимке.
+ * <p>
+ * Метод {@link #main(String[])} — преобразование XML в снимок и обратно.
+ */
+public final class BinarySnapshot implements Closeable {
+
+    // Раскладка заголовка (используется и постраничным чтением, см. PagedSnapshotStore)
+    static final int MAGIC = 0x434C4E42; // "CLNB"
+    static final short VERSION = 1;
+    static final int COLUMNS = PatientSnapshot.COLUMN_COUNT;
+    static final int ROW_COUNT_OFFSET = 8;
+    static final int RECORDS_OFFSET = 16;
+    static final int MARK_OFFSET = 24;
+    static final int SOURCE_SIZE_OFFSET = 32;
+    static final int SOURCE_MODIFIED_OFFSET = 40;
+    static final int DICTIONARIES_OFFSET = 48;
+    // сигнатура, версия, колонки, строки, резерв, записи, отметка, размер и время XML, словари
+    static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 8 + 8 + 8 + 8 + 8 * COLUMNS;
+
+    private final File file;
+    private final int rowCount;
+    private final IntBuffer records;
+    private final String journalMark;
+
+    // Словари: число значений, начало таблицы смещений и начало строк для каждой колонки
+    private final MappedByteBuffer buffer;
+    private final int[] dictionarySizes = new int[COLUMNS];
+    private final int[] offsetTables = new int[COLUMNS];
+    private final int[] stringAreas = new int[COLUMNS];
+    private final String[][] decoded = new String[COLUMNS][];
+
+    private BinarySnapshot(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        long length = buffer.capacity();
+        if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Файл не является двоичным снимком: " + file);
+        }
+        if (buffer.getShort(4) != VERSION || buffer.getShort(6) != COLUMNS) {
+            throw new IOException("Неподдерживаемая версия двоичного снимка: " + file);
+        }
+        rowCount = buffer.getInt(ROW_COUNT_OFFSET);
+        long recordsOffset = buffer.getLong(RECORDS_OFFSET);
+        long markOffset = buffer.getLong(MARK_OFFSET);
+        if (rowCount < 0 || recordsOffset < HEADER_SIZE
+                || recordsOffset + (long) rowCount * COLUMNS * 4 > length || markOffset > length) {
+            throw new IOException("Повреждённый двоичный снимок: " + file);
+        }
+
+        for (int col = 0; col < COLUMNS; col++) {
+            long offset = buffer.getLong(DICTIONARIES_OFFSET + 8 * col);
+            if (offset < HEADER_SIZE || offset + 4 > recordsOffset) {
+                throw new IOException("Повреждённый словарь колонки " + col + " в " + file);
+            }
+            int size = buffer.getInt((int) offset);
+            long stringArea = offset + 4 + 4L * (size + 1);
+            if (size < 0 || stringArea > recordsOffset
+                    || stringArea + buffer.getInt((int) (offset + 4 + 4L * size)) > recordsOffset) {
+                throw new IOException("Повреждённый словарь колонки " + col + " в " + file);
+            }
+            dictionarySizes[col] = size;
+            offsetTables[col] = (int) offset + 4;
+            stringAreas[col] = (int) stringArea;
+            decoded[col] = new String[size];
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) recordsOffset);
+        view.limit((int) (recordsOffset + (long) rowCount * COLUMNS * 4));
+        records = view.slice().asIntBuffer();
+
+        if (markOffset > 0) {
+            int markLength = buffer.getShort((int) markOffset) & 0xFFFF;
+            byte[] bytes = new byte[markLength];
+            ByteBuffer markView = buffer.duplicate();
+            markView.position((int) markOffset + 2);
+            markView.get(bytes);
+            journalMark = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            journalMark = null;
+        }
+    }
+
+    /**
+     * Файл двоичного снимка для XML-файла: то же имя с расширением {@code .bin}.
+     * @param xmlFile файл XML
+     */
+    public static File fileFor(File xmlFile) {
+        String name = xmlFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(xmlFile.getAbsoluteFile().getParentFile(), base + ".bin");
+    }
+
+    /**
+     * Есть ли для XML-файла двоичный снимок, записанный вместе с ним: размер и время изменения
+     * XML должны совпасть с записанными в заголовке снимка. Сравнение только времени не годится:
+     * XML мог быть перезаписан в пределах точности времени файла или восстановлен из копии
+     * с прежним временем.
+     * @param xmlFile файл XML
+     */
+    public static boolean isUsable(File xmlFile) {
+        File binary = fileFor(xmlFile);
+        if (!binary.isFile() || !xmlFile.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SOURCE_MODIFIED_OFFSET + 8);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // читаем начало заголовка
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getShort(4) == VERSION
+                    && header.getLong(SOURCE_SIZE_OFFSET) == xmlFile.length()
+                    && header.getLong(SOURCE_MODIFIED_OFFSET) == modifiedNanos(xmlFile);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    // Время изменения файла с полной точностью файловой системы (lastModified() округляет до миллисекунд)
+    static long modifiedNanos(File file) throws IOException {
+        return Files.getLastModifiedTime(file.toPath()).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Открывает снимок: файл отображается в память, читается только заголовок.
+     * @param file файл снимка
+     * @return открытый снимок
+     * @throws IOException если файл не читается или не является снимком
+     */
+    public static BinarySnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Слишком большой двоичный снимок: " + file);
+            }
+            // Отображение остаётся доступным и после закрытия канала
+            return new BinarySnapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Атомарно записывает снимок таблицы в двоичный файл (можно вызывать из любого потока).
+     * @param snapshot снимок таблицы пациентов
+     * @param file файл снимка
+     * @param journalMark отметка журнала изменений или {@code null}
+     * @param source XML-файл с теми же данными, уже записанный (его размер и время изменения
+     *               попадают в заголовок, см. {@link #isUsable}), или {@code null}
+     * @throws IOException при ошибке записи; прежний файл в этом случае остаётся
+     */
+    public static void write(PatientSnapshot snapshot, File file, String journalMark, File source) throws IOException {
+        int rows = snapshot.getRowCount();
+        long sourceSize = source != null ? source.length() : -1;
+        long sourceModified = source != null ? modifiedNanos(source) : -1;
+
+        // Словарь колонки пишется до наибольшего встречающегося кода
+        byte[][][] dictionaries = new byte[COLUMNS][][];
+        long[] dictionaryOffsets = new long[COLUMNS];
+        long position = HEADER_SIZE;
+        for (int col = 0; col < COLUMNS; col++) {
+            int size = 0;
+            for (int row = 0; row < rows; row++) {
+                size = Math.max(size, snapshot.getCode(row, col) + 1);
+            }
+            byte[][] values = new byte[size][];
+            long bytes = 0;
+            for (int code = 0; code < size; code++) {
+                values[code] = snapshot.getDictionaryValue(col, code).getBytes(StandardCharsets.UTF_8);
+                bytes += values[code].length;
+            }
+            dictionaries[col] = values;
+            dictionaryOffsets[col] = position;
+            position += 4 + 4L * (size + 1) + bytes;
+        }
+        long recordsOffset = (position + 3) & ~3L; // записи выровнены по 4 байта
+        long markOffset = 0;
+        byte[] mark = null;
+        if (journalMark != null) {
+            mark = journalMark.getBytes(StandardCharsets.UTF_8);
+            markOffset = recordsOffset + (long) rows * COLUMNS * 4;
+        }
+        long total = recordsOffset + (long) rows * COLUMNS * 4 + (mark != null ? 2 + mark.length : 0);
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Слишком много данных для двоичного снимка: " + total + " байт");
+        }
+
+        Path target = file.getAbsoluteFile().toPath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(COLUMNS);
+                out.writeInt(rows);
+                out.writeInt(0); // резерв
+                out.writeLong(recordsOffset);
+                out.writeLong(markOffset);
+                out.writeLong(sourceSize);
+                out.writeLong(sourceModified);
+                for (long offset : dictionaryOffsets) {
+                    out.writeLong(offset);
+                }
+
+                for (byte[][] values : dictionaries) {
+                    out.writeInt(values.length);
+                    int offset = 0;
+                    out.writeInt(offset);
+                    for (byte[] value : values) {
+                        offset += value.length;
+                        out.writeInt(offset);
+                    }
+                    for (byte[] value : values) {
+                        out.write(value);
+                    }
+                }
+                for (long pad = position; pad < recordsOffset; pad++) {
+                    out.writeByte(0);
+                }
+
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < COLUMNS; col++) {
+                        out.writeInt(snapshot.getCode(row, col));
+                    }
+                }
+                if (mark != null) {
+                    out.writeShort(mark.length);
+                    out.write(mark);
+                }
+                out.flush();
+                fos.getFD().sync(); // данные должны оказаться на диске до переименования
+            }
+            XMLfile.replaceWithTemp(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Количество строк в снимке.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Код значения ячейки в словаре её колонки (читается прямо из отображённого файла).
+     * @param row номер строки
+     * @param column номер колонки
+     */
+    public int getCode(int row, int column) {
+        return records.get(row * COLUMNS + column);
+    }
+
+    /**
+     * Количество значений в словаре колонки.
+     * @param column номер колонки
+     */
+    public int getDictionarySize(int column) {
+        return dictionarySizes[column];
+    }
+
+    /**
+     * Значение словаря колонки по коду (декодируется один раз при первом обращении).
+     * @param column номер колонки
+     * @param code код значения
+     */
+    public String getDictionaryValue(int column, int code) {
+        String value = decoded[column][code];
+        if (value == null) {
+            int start = buffer.getInt(offsetTables[column] + 4 * code);
+            int end = buffer.getInt(offsetTables[column] + 4 * (code + 1));
+            byte[] bytes = new byte[end - start];
+            ByteBuffer view = buffer.duplicate();
+            view.position(stringAreas[column] + start);
+            view.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            decoded[column][code] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Значение ячейки.
+     * @param row номер строки
+     * @param column номер колонки
+     */
+    public String getValueAt(int row, int column) {
+        return getDictionaryValue(column, getCode(row, column));
+    }
+
+    /**
+     * Отметка журнала изменений, записанная вместе со снимком, или {@code null}.
+     */
+    public String getJournalMark() {
+        return journalMark;
+    }
+
+    /**
+     * Файл снимка.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Ничего не освобождает явно: отображение файла снимается сборщиком мусора,
+     * когда на снимок больше нет ссылок. Нужен для использования в try-with-resources.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Преобразование форматов:
+     * <pre>
+     * BinarySnapshot toBinary &lt;файл.xml&gt; [&lt;файл.bin&gt;]
+     * BinarySnapshot toXml &lt;файл.bin&gt; &lt;файл.xml&gt;
+     * </pre>
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && "toBinary".equals(args[0])) {
+            File xml = new File(args[1]);
+            File binary = args.length > 2 ? new File(args[2]) : fileFor(xml);
+            long start = System.nanoTime();
+            PatientTableModel model = new PatientTableModel();
+            List<String[]> rows = new ArrayList<>();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(xml), 64 * 1024)) {
+                XMLfile.readPatients(in, rows::add);
+            }
+            model.setRows(rows);
+            write(model.snapshot(), binary, XMLfile.readJournalMark(xml), xml);
+            System.out.println("Записано строк: " + model.getRowCount() + " в " + binary + " за "
+                    + (System.nanoTime() - start) / 1_000_000 + " мс");
+        } else if (args.length == 3 && "toXml".equals(args[0])) {
+            File binary = new File(args[1]);
+            File xml = new File(args[2]);
+            long start = System.nanoTime();
+            PatientTableModel model = new PatientTableModel();
+            try (BinarySnapshot snapshot = open(binary)) {
+                model.load(snapshot);
+                XMLfile.writeXML(model.snapshot(), xml, snapshot.getJournalMark());
+            }
+            System.out.println("Записано строк: " + model.getRowCount() + " в " + xml + " за "
+                    + (System.nanoTime() - start) / 1_000_000 + " мс");
+        } else {
+            System.out.println("Использование:");
+            System.out.println("  BinarySnapshot toBinary <файл.xml> [<файл.bin>]");
+            System.out.println("  BinarySnapshot toXml <файл.bin> <файл.xml>");
+            System.exit(2);
+        }
+    }
+}
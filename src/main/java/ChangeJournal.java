@@ -0,0 +1,680 @@
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений таблицы: вместо перезаписи всего XML-файла при каждом сохранении
+ * добавление, удаление и правка строк дописываются в конец файла {@code <имя>.xml.journal}
+ * рядом с XML.
+ * <p>
+ * Формат журнала: заголовок (сигнатура, версия, идентификатор журнала), затем записи
+ * {@code [длина][CRC32][номер, операция, строка, значения]}, значение — {@code [длина][байты UTF-8]}.
+ * Записи копятся в памяти и сбрасываются на диск с {@code force()} пачками — раз в
+ * {@value #FLUSH_DELAY_MS} мс или каждые {@value #FLUSH_RECORDS} записей. Недописанная при сбое последняя запись
+ * распознаётся по длине или контрольной сумме и отбрасывается.
+ * <p>
+ * XML-файл служит контрольной точкой: в атрибуте {@code journal} его корневого элемента
+ * хранится идентификатор журнала и номер последней учтённой в нём записи. При открытии
+ * поверх загруженного XML проигрываются только записи с большими номерами. Когда журнал
+ * вырастает больше {@value #COMPACT_BYTES} байт, снимок таблицы в фоне записывается в XML
+ * с новой отметкой, после чего из журнала убираются учтённые в нём записи (сжатие). Журнал с чужим идентификатором
+ * (например, XML был перезаписан без журнала) не проигрывается и переименовывается
+ * в {@code .stale}.
+ * <p>
+ * Все файловые операции выполняются в одном фоновом потоке журнала, остальные методы
+ * вызываются в потоке Swing (EDT).
+ */
+public class ChangeJournal implements TableModelListener {
+
+    /** Через сколько миллисекунд после первой несброшенной записи журнал сбрасывается на диск. */
+    private static final long FLUSH_DELAY_MS = 1000;
+    /** Сколько несброшенных записей вызывают немедленный сброс. */
+    private static final int FLUSH_RECORDS = 256;
+    /** Размер журнала, после которого он сворачивается в новый XML. */
+    private static final long COMPACT_BYTES = 4L * 1024 * 1024;
+
+    private static final int MAGIC = 0x434A524E; // "CJRN"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+    private static final int MAX_RECORD = 16 * 1024 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_UPDATE = 3;
+
+    private final PatientTableModel tableModel;
+    private final File xmlFile;
+    private final File journalFile;
+    private final Consumer<String> statusListener;
+    private final ScheduledExecutorService ioExecutor;
+
+    private long journalId;
+    private long lastSeq;               // номер последней записи (EDT)
+    private boolean compacting;         // идёт сжатие (EDT)
+    private boolean compactAgain;       // во время сжатия понадобилась новая точка (EDT)
+    private boolean closed;
+
+    // Кодирование записей (только EDT)
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    // Записи, ещё не сброшенные на диск (EDT добавляет, поток журнала забирает)
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(16 * 1024);
+    private int pendingRecords;
+    private long pendingMaxSeq;
+    private ScheduledFuture<?> scheduledFlush;
+
+    // Размер журнала на диске вместе с несброшенными записями
+    private final AtomicLong journalBytes = new AtomicLong();
+
+    // Только поток журнала
+    private FileChannel channel;
+    private long flushedSeq;            // номер последней записи, попавшей в файл
+    private long checkpointSeq;         // номер, записанный в XML последним
+
+    private ChangeJournal(PatientTableModel tableModel, File xmlFile, Consumer<String> statusListener) {
+        this.tableModel = tableModel;
+        this.xmlFile = xmlFile;
+        this.journalFile = journalFile(xmlFile);
+        this.statusListener = statusListener;
+        this.ioExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "change-journal");
+            thread.setDaemon(true); // незаписанное восстанавливается из XML и целых записей журнала
+            return thread;
+        });
+    }
+
+    /**
+     * Файл журнала для данного XML-файла.
+     * @param xmlFile файл XML
+     * @return файл {@code <xmlFile>.journal}
+     */
+    public static File journalFile(File xmlFile) {
+        return new File(xmlFile.getPath() + ".journal");
+    }
+
+    /**
+     * Проигрывает журнал поверх только что загруженных из {@code xmlFile} данных
+     * и начинает записывать в него изменения модели. Если подходящего журнала нет,
+     * сначала (в фоне) создаётся контрольная точка: XML с отметкой нового журнала.
+     * @param tableModel     модель, в которую загружен {@code xmlFile}
+     * @param xmlFile        файл XML, рядом с которым ведётся журнал
+     * @param statusListener получает "SAVED" или "FAILED" после сброса на диск (в потоке Swing), может быть {@code null}
+     * @return открытый журнал
+     */
+    public static ChangeJournal open(PatientTableModel tableModel, File xmlFile, Consumer<String> statusListener) {
+        return start(tableModel, xmlFile, statusListener, true);
+    }
+
+    /**
+     * Продолжает журнал без проигрывания: модель уже содержит все его записи
+     * (например, после отмены загрузки другого файла, когда журнал был закрыт).
+     * @param tableModel     модель с актуальными данными
+     * @param xmlFile        файл XML, рядом с которым ведётся журнал
+     * @param statusListener получает "SAVED" или "FAILED" после сброса на диск, может быть {@code null}
+     * @return открытый журнал
+     */
+    public static ChangeJournal reattach(PatientTableModel tableModel, File xmlFile, Consumer<String> statusListener) {
+        return start(tableModel, xmlFile, statusListener, false);
+    }
+
+    private static ChangeJournal start(PatientTableModel tableModel, File xmlFile,
+                                       Consumer<String> statusListener, boolean replay) {
+        ChangeJournal journal = new ChangeJournal(tableModel, xmlFile, statusListener);
+        long validEnd = -1;
+        try {
+            String mark = XMLfile.readJournalMark(xmlFile);
+            long markId = 0;
+            long markSeq = -1;
+            if (mark != null) {
+                int colon = mark.indexOf(':');
+                markId = Long.parseUnsignedLong(mark.substring(0, colon), 16);
+                markSeq = Long.parseLong(mark.substring(colon + 1));
+            }
+            if (journal.journalFile.exists()) {
+                validEnd = journal.replay(markId, markSeq, replay);
+                if (validEnd < 0) {
+                    File stale = new File(journal.journalFile.getPath() + ".stale");
+                    Files.move(journal.journalFile.toPath(), stale.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    System.out.println("Журнал не соответствует " + xmlFile.getName() + ", сохранён как " + stale);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+            validEnd = -1;
+        }
+
+        if (validEnd >= 0) {
+            long end = validEnd;
+            journal.journalBytes.set(end);
+            journal.submit(() -> journal.openChannel(end));
+        } else {
+            // Новый журнал: сначала XML с его отметкой, затем пустой файл журнала
+            journal.journalId = ThreadLocalRandom.current().nextLong();
+            journal.lastSeq = 0;
+            journal.journalBytes.set(HEADER_SIZE);
+            PatientSnapshot snapshot = tableModel.snapshot();
+            journal.submit(() -> {
+                journal.writeCheckpoint(snapshot, 0);
+                journal.createJournal();
+            });
+        }
+        tableModel.addTableModelListener(journal);
+        return journal;
+    }
+
+    /**
+     * Читает журнал и (если {@code apply}) применяет к модели записи после контрольной точки.
+     * @return длина целой части журнала или -1, если журнал не относится к этому XML
+     */
+    private long replay(long markId, long markSeq, boolean apply) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return -1;
+            }
+            journalId = in.readLong();
+            if (markSeq < 0 || journalId != markId) {
+                return -1;
+            }
+            lastSeq = markSeq;
+            checkpointSeq = markSeq;
+
+            long position = HEADER_SIZE;
+            int applied = 0;
+            byte[] payload = new byte[256];
+            Object[] values = new Object[PatientSnapshot.COLUMN_COUNT];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD) {
+                        break;
+                    }
+                    if (payload.length < length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    in.readFully(payload, 0, length);
+                } catch (EOFException ex) {
+                    break; // запись не дописана
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+                long seq = record.readLong();
+                byte op = record.readByte();
+                int row = record.readInt();
+                if (op != OP_DELETE) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = readString(record);
+                    }
+                }
+                if (seq > lastSeq) {
+                    if (apply && !applyRecord(op, row, values)) {
+                        System.out.println("Журнал: запись " + seq + " не применима, дальнейшие пропущены");
+                        break;
+                    }
+                    lastSeq = seq;
+                    applied++;
+                }
+                position += 8 + length;
+            }
+            flushedSeq = lastSeq;
+            System.out.println("Журнал " + journalFile.getName() + ": применено записей " + applied
+                    + ", последняя " + lastSeq);
+            return position;
+        } catch (EOFException ex) {
+            return -1; // нет даже заголовка
+        }
+    }
+
+    private boolean applyRecord(byte op, int row, Object[] values) {
+        switch (op) {
+            case OP_ADD:
+                if (row != tableModel.getRowCount()) {
+                    return false;
+                }
+                tableModel.addRow(values);
+                return true;
+            case OP_DELETE:
+                if (row < 0 || row >= tableModel.getRowCount()) {
+                    return false;
+                }
+                tableModel.removeRow(row);
+                return true;
+            case OP_UPDATE:
+                if (row < 0 || row >= tableModel.getRowCount()) {
+                    return false;
+                }
+                tableModel.setRow(row, values);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Записывает изменения модели в журнал.
+     */
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        if (closed) {
+            return;
+        }
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            compact(); // модель заменена целиком — журнал по ней не восстановить, нужна новая точка
+            return;
+        }
+        try {
+            switch (e.getType()) {
+                case TableModelEvent.INSERT:
+                    for (int row = first; row <= last; row++) {
+                        append(OP_ADD, row, true);
+                    }
+                    break;
+                case TableModelEvent.DELETE:
+                    for (int row = first; row <= last; row++) {
+                        append(OP_DELETE, first, false); // после каждого удаления строки сдвигаются
+                    }
+                    break;
+                default:
+                    for (int row = first; row <= last; row++) {
+                        append(OP_UPDATE, row, true);
+                    }
+                    break;
+            }
+        } catch (IOException ex) {
+            // Запись не попала в журнал (например, слишком большое значение): сообщаем
+            // и сохраняем изменение контрольной точкой — XML со снимком всей таблицы
+            ex.printStackTrace();
+            report("FAILED");
+            compact();
+            return;
+        }
+        if (journalBytes.get() > COMPACT_BYTES) {
+            compact();
+        }
+    }
+
+    private void append(byte op, int row, boolean withValues) throws IOException {
+        // Номер присваивается только готовой записи: иначе неудачная запись оставила бы
+        // пропуск в номерах, на котором проигрывание остановится
+        long seq = lastSeq + 1;
+        recordBytes.reset();
+        recordOut.writeLong(seq);
+        recordOut.writeByte(op);
+        recordOut.writeInt(row);
+        if (withValues) {
+            for (int column = 0; column < PatientSnapshot.COLUMN_COUNT; column++) {
+                writeString(recordOut, tableModel.getValueAt(row, column));
+            }
+        }
+        recordOut.flush();
+        if (recordBytes.size() > MAX_RECORD) {
+            throw new IOException("Запись журнала длиннее " + MAX_RECORD + " байт (строка " + row + ")");
+        }
+        lastSeq = seq;
+        crc.reset();
+        crc.update(recordBytes.toByteArray(), 0, recordBytes.size());
+
+        boolean flushNow;
+        synchronized (this) {
+            DataOutputStream out = new DataOutputStream(pending);
+            out.writeInt(recordBytes.size());
+            out.writeInt((int) crc.getValue());
+            recordBytes.writeTo(pending);
+            pendingRecords++;
+            pendingMaxSeq = seq;
+            flushNow = pendingRecords >= FLUSH_RECORDS;
+        }
+        journalBytes.addAndGet(8 + recordBytes.size());
+
+        if (flushNow) {
+            submit(this::flushPending);
+        } else if (scheduledFlush == null || scheduledFlush.isDone()) {
+            try {
+                scheduledFlush = ioExecutor.schedule(() -> run(this::flushPending), FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_RECORD) {
+            throw new IOException("Неверная длина значения в журнале: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Сворачивает журнал в XML: снимок берётся сейчас, запись XML и усечение журнала — в фоне.
+     * Если сжатие уже идёт, следующее начнётся после него.
+     */
+    public void compact() {
+        if (closed) {
+            return;
+        }
+        if (compacting) {
+            compactAgain = true;
+            return;
+        }
+        compacting = true;
+        PatientSnapshot snapshot = tableModel.snapshot();
+        long seq = lastSeq;
+        submit(() -> {
+            try {
+                long start = System.nanoTime();
+                flushPending(); // сначала все записи на диск: до XML журнал остаётся полным
+                writeCheckpoint(snapshot, seq);
+                dropUpTo(seq);
+                System.out.println("Журнал свёрнут в " + xmlFile.getName() + " (запись " + seq + ") за "
+                        + (System.nanoTime() - start) / 1_000_000 + " мс");
+            } finally {
+                SwingUtilities.invokeLater(() -> {
+                    compacting = false;
+                    if (compactAgain) {
+                        compactAgain = false;
+                        compact();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Записывает XML из снимка с отметкой этого журнала (для других записей того же файла,
+     * например конвейера "Поток"). Выполняется в потоке журнала; вызывающий поток ждёт.
+     * @param snapshot снимок таблицы
+     * @param seq      номер последней записи журнала на момент снимка ({@link #getLastSeq()})
+     * @throws IOException при ошибке записи или если журнал уже закрыт
+     */
+    public void checkpoint(PatientSnapshot snapshot, long seq) throws IOException {
+        Future<?> future;
+        try {
+            future = ioExecutor.submit(() -> {
+                flushPending();
+                writeCheckpoint(snapshot, seq);
+                return null;
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new IOException("Журнал изменений закрыт", ex);
+        }
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запись прервана");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск все записи, не дожидаясь таймера, и ждёт окончания записи.
+     * @throws IOException при ошибке записи
+     */
+    public void sync() throws IOException {
+        Future<?> future;
+        try {
+            future = ioExecutor.submit(() -> {
+                flushPending();
+                return null;
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new IOException("Журнал изменений закрыт", ex);
+        }
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Запись прервана");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Сбрасывает несохранённые записи и закрывает журнал (файл журнала остаётся).
+     * Ждёт окончания фоновых операций, в том числе начатого сжатия.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        tableModel.removeTableModelListener(this);
+        submit(() -> {
+            flushPending();
+            closeChannel();
+        });
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("Журнал: фоновая запись не завершилась за 30 с");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Выключает журнал: текущие данные записываются в XML (без отметки журнала),
+     * после чего файл журнала удаляется. Запись выполняется в фоне.
+     */
+    public void closeAndFold() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        tableModel.removeTableModelListener(this);
+        PatientSnapshot snapshot = tableModel.snapshot();
+        submit(() -> {
+            flushPending();
+            XMLfile.writeXMLWithSnapshot(snapshot, xmlFile, null);
+            closeChannel();
+            Files.deleteIfExists(journalFile.toPath());
+            System.out.println("Журнал свёрнут в " + xmlFile.getName() + " и удалён");
+        });
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Номер последней записи журнала (вызывать в потоке Swing).
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Файл XML, рядом с которым ведётся журнал.
+     */
+    public File getXmlFile() {
+        return xmlFile;
+    }
+
+    // ---------- Поток журнала ----------
+
+    private interface IoTask {
+        void run() throws IOException;
+    }
+
+    private void submit(IoTask task) {
+        try {
+            ioExecutor.execute(() -> run(task));
+        } catch (RejectedExecutionException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void run(IoTask task) {
+        try {
+            task.run();
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+            report("FAILED");
+        }
+    }
+
+    private void flushPending() throws IOException {
+        byte[] batch;
+        long maxSeq;
+        synchronized (this) {
+            if (pendingRecords == 0) {
+                return;
+            }
+            batch = pending.toByteArray();
+            maxSeq = pendingMaxSeq;
+            pending.reset();
+            pendingRecords = 0;
+        }
+        if (channel == null) {
+            throw new IOException("Журнал не открыт: " + journalFile);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        flushedSeq = maxSeq;
+        report("SAVED");
+    }
+
+    // Убирает из журнала записи, уже учтённые в XML (номер не больше seq)
+    private void dropUpTo(long seq) throws IOException {
+        long size = channel.size();
+        if (flushedSeq <= seq) {
+            channel.truncate(HEADER_SIZE);
+            channel.force(true);
+            journalBytes.addAndGet(HEADER_SIZE - size);
+            return;
+        }
+
+        // Записи в файле идут по возрастанию номеров: ищем первую более позднюю
+        long offset = HEADER_SIZE;
+        ByteBuffer head = ByteBuffer.allocate(16);
+        while (offset < size) {
+            head.clear();
+            while (head.hasRemaining() && channel.read(head, offset + head.position()) > 0) {
+                // читаем заголовок записи и её номер
+            }
+            if (head.hasRemaining() || head.getLong(8) > seq) {
+                break;
+            }
+            offset += 8 + head.getInt(0);
+        }
+
+        // Оставшийся хвост переписываем в новый файл журнала
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            long position = offset;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+        closeChannel();
+        Files.move(tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        openChannel(HEADER_SIZE + size - offset);
+        journalBytes.addAndGet(HEADER_SIZE - offset);
+    }
+
+    private void writeCheckpoint(PatientSnapshot snapshot, long seq) throws IOException {
+        if (seq < checkpointSeq) {
+            return; // в XML уже более новые данные
+        }
+        XMLfile.writeXMLWithSnapshot(snapshot, xmlFile, Long.toHexString(journalId) + ":" + seq);
+        checkpointSeq = seq;
+        report("SAVED");
+    }
+
+    private void createJournal() throws IOException {
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            out.force(true);
+        }
+        Files.move(tmp.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        openChannel(HEADER_SIZE);
+    }
+
+    private void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putLong(journalId).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    private void openChannel(long validEnd) throws IOException {
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > validEnd) {
+            channel.truncate(validEnd); // отбрасываем недописанную запись
+        }
+        channel.position(validEnd);
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void report(String state) {
+        if (statusListener != null) {
+            SwingUtilities.invokeLater(() -> statusListener.accept(state));
+        }
+    }
+}
@@ -1,12 +1,18 @@
 import javax.swing.SwingUtilities;
+import java.util.Arrays;
 
 /**
  * Основной класс приложения, содержащий точку входа.
+ * С параметром {@code --batch} окно не открывается: строятся отчёты по XML-файлам ({@link BatchReport}).
  * @author Osipova Elena 3311
  * @version 1.00
  */
 public class ClinicApp {
     public static void main(String[] args) {
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            System.exit(BatchReport.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        EdtWatchdog.installFromSystemProperties(); // -Dclinic.edtWatchdog=<порог, мс>
         SwingUtilities.invokeLater(() -> {
             // (1) Сначала просим ввести логин/пароль
             boolean isAuthenticated = GUI.showLoginDialog();
@@ -0,0 +1,208 @@
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий для всего процесса кэш скомпилированных шаблонов отчётов (.jrxml -> JasperReport).
+ * <p>
+ * Запись кэша привязана к пути шаблона и проверяется по времени изменения и размеру файла;
+ * если они поменялись, сверяется хэш содержимого, и только при его изменении шаблон
+ * компилируется заново. Если задано системное свойство {@code clinic.reports.cacheDir},
+ * скомпилированные отчёты дополнительно сохраняются туда в виде .jasper-файлов,
+ * так что новый процесс тоже обходится без компиляции.
+ */
+public class CompiledReportCache {
+
+    /** Системное свойство с каталогом для .jasper-файлов (если не задано — только память). */
+    public static final String CACHE_DIR_PROPERTY = "clinic.reports.cacheDir";
+
+    private static final CompiledReportCache INSTANCE = new CompiledReportCache(
+            System.getProperty(CACHE_DIR_PROPERTY) != null ? new File(System.getProperty(CACHE_DIR_PROPERTY)) : null);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final File cacheDir;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+
+    /**
+     * @param cacheDir каталог для .jasper-файлов или {@code null}, если хранить только в памяти
+     */
+    public CompiledReportCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Кэш, общий для всего процесса.
+     */
+    public static CompiledReportCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Возвращает скомпилированный отчёт для шаблона, компилируя его только при необходимости.
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @return скомпилированный отчёт
+     * @throws JRException при ошибке компиляции или чтения шаблона
+     */
+    public JasperReport get(String reportPath) throws JRException {
+        File reportFile = new File(reportPath).getAbsoluteFile();
+        Entry entry = entries.computeIfAbsent(reportFile.getPath(), key -> new Entry());
+
+        synchronized (entry) {
+            long lastModified = reportFile.lastModified();
+            long length = reportFile.length();
+
+            // Быстрая проверка: файл не трогали с прошлого раза
+            if (entry.report != null && entry.lastModified == lastModified && entry.length == length) {
+                hits.incrementAndGet();
+                return entry.report;
+            }
+
+            byte[] content;
+            try {
+                content = Files.readAllBytes(reportFile.toPath());
+            } catch (IOException ex) {
+                throw new JRException("Не удалось прочитать шаблон отчета: " + reportPath, ex);
+            }
+            String hash = sha256(content);
+
+            // Время изменения поменялось, а содержимое нет (например, файл просто скопировали)
+            if (entry.report != null && hash.equals(entry.hash)) {
+                entry.lastModified = lastModified;
+                entry.length = length;
+                hits.incrementAndGet();
+                return entry.report;
+            }
+
+            JasperReport report = loadFromDisk(reportFile, hash);
+            if (report != null) {
+                diskHits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                try (Metrics.Operation op = Metrics.begin("report.compile").file(reportFile)) {
+                    report = JasperCompileManager.compileReport(new ByteArrayInputStream(content));
+                    op.succeeded();
+                }
+                saveToDisk(reportFile, hash, report);
+            }
+
+            entry.report = report;
+            entry.hash = hash;
+            entry.lastModified = lastModified;
+            entry.length = length;
+            return report;
+        }
+    }
+
+    /**
+     * Число обращений, обслуженных из памяти.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Число компиляций шаблонов.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Число отчётов, загруженных из сохранённых .jasper-файлов вместо компиляции.
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Сбрасывает кэш в памяти (файлы на диске не удаляются).
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledReportCache{hits=" + hits.get() + ", misses=" + misses.get()
+                + ", diskHits=" + diskHits.get() + ", entries=" + entries.size() + "}";
+    }
+
+    /**
+     * Имя .jasper-файла включает хэш содержимого шаблона, поэтому устаревший файл просто не найдётся.
+     */
+    private File jasperFile(File reportFile, String hash) {
+        String name = reportFile.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return new File(cacheDir, baseName + "-" + hash.substring(0, 16) + ".jasper");
+    }
+
+    private JasperReport loadFromDisk(File reportFile, String hash) {
+        if (cacheDir == null) {
+            return null;
+        }
+        File file = jasperFile(reportFile, hash);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return (JasperReport) JRLoader.loadObject(file);
+        } catch (Exception ex) {
+            // Файл от другой версии JasperReports или повреждён — просто компилируем заново
+            System.out.println("Не удалось загрузить " + file + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToDisk(File reportFile, String hash, JasperReport report) {
+        if (cacheDir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            File target = jasperFile(reportFile, hash);
+            File tmp = new File(cacheDir, target.getName() + ".tmp");
+            JRSaver.saveObject(report, tmp);
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception ex) {
+            // Кэш на диске — только оптимизация, отчёт уже скомпилирован
+            System.out.println("Не удалось сохранить скомпилированный отчет: " + ex.getMessage());
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Состояние одного шаблона; поля меняются только под synchronized (entry)
+    private static class Entry {
+        JasperReport report;
+        String hash;
+        long lastModified;
+        long length;
+    }
+}
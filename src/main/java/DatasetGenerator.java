@@ -0,0 +1,310 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Генератор синтетических данных клиники: файлы {@code <patients>} любого размера
+ * в том же формате, что и {@code mainReport.xml}.
+ * <p>
+ * Настраиваются число различных врачей, болезней и специализаций, диапазон дат приёма,
+ * доли статусов и доля имён латиницей (остальные — кириллицей). Имена складываются из
+ * имени и фамилии с учётом пола ({@code Ivan Ivanov}, {@code Мария Петрова}). У каждого
+ * врача одна специализация; часто встречающиеся болезни и загруженные врачи выбираются
+ * чаще остальных. При одинаковом {@code seed} и настройках получаются одинаковые данные.
+ * <p>
+ * Строки создаются по одной ({@link #nextRow()}), поэтому файл пишется потоково и не
+ * ограничен памятью. Метод {@link #main(String[])} — запуск из командной строки.
+ */
+public class DatasetGenerator {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    // {кириллица, латиница}; фамилии в мужской форме, женская — с окончанием «а»
+    private static final String[][] MALE_NAMES = {{"Иван", "Ivan"}, {"Сергей", "Sergey"}, {"Дмитрий", "Dmitry"},
+            {"Андрей", "Andrey"}, {"Олег", "Oleg"}, {"Николай", "Nikolay"}, {"Виктор", "Victor"}, {"Максим", "Maksim"},
+            {"Илья", "Ilya"}, {"Юрий", "Yuriy"}, {"Станислав", "Stanislav"}, {"Алексей", "Aleksey"}, {"Павел", "Pavel"},
+            {"Михаил", "Mikhail"}, {"Владимир", "Vladimir"}, {"Егор", "Egor"}};
+    private static final String[][] FEMALE_NAMES = {{"Мария", "Maria"}, {"Ольга", "Olga"}, {"Анна", "Anna"},
+            {"Лидия", "Lidia"}, {"Екатерина", "Ekaterina"}, {"Вера", "Vera"}, {"Надежда", "Nadezhda"},
+            {"Марина", "Marina"}, {"Елена", "Elena"}, {"Оксана", "Oksana"}, {"Татьяна", "Tatiana"},
+            {"Ирина", "Irina"}, {"Светлана", "Svetlana"}, {"Наталья", "Natalia"}, {"Юлия", "Yulia"}, {"Дарья", "Daria"}};
+    private static final String[][] SURNAMES = {{"Иванов", "Ivanov"}, {"Петров", "Petrov"}, {"Кузнецов", "Kuznetsov"},
+            {"Тихонов", "Tikhonov"}, {"Сидоров", "Sidorov"}, {"Никифоров", "Nikiforov"}, {"Крылов", "Krylov"},
+            {"Павлов", "Pavlov"}, {"Морозов", "Morozov"}, {"Фомин", "Fomin"}, {"Лебедев", "Lebedev"},
+            {"Соколов", "Sokolov"}, {"Гришин", "Grishin"}, {"Борисов", "Borisov"}, {"Гаврилов", "Gavrilov"},
+            {"Попов", "Popov"}, {"Яковлев", "Yakovlev"}, {"Кравцов", "Kravtsov"}, {"Зуев", "Zuev"},
+            {"Смирнов", "Smirnov"}, {"Волков", "Volkov"}, {"Новиков", "Novikov"}, {"Козлов", "Kozlov"},
+            {"Васильев", "Vasiliev"}, {"Зайцев", "Zaitsev"}, {"Орлов", "Orlov"}, {"Медведев", "Medvedev"},
+            {"Ершов", "Ershov"}, {"Комаров", "Komarov"}, {"Белов", "Belov"}, {"Карпов", "Karpov"}, {"Макаров", "Makarov"}};
+    private static final String[] DISEASES = {"Acute Respiratory Viral Infection", "Asthma", "Migraine", "Arthritis",
+            "Pneumonia", "Hypertension", "Diabetes", "Lung Cancer", "Osteochondrosis", "Pancreatitis", "Insomnia",
+            "Allergy", "Tonsillitis", "Kidney Disease", "Cholecystitis", "Glaucoma", "Obesity", "Epilepsy", "Anemia",
+            "Chronic Stress", "Varicose Veins", "Stomach Cancer", "Bronchitis", "Gastritis", "Otitis", "Sinusitis",
+            "Dermatitis", "Cataract", "Scoliosis", "Depression", "Hepatitis", "Angina"};
+    private static final String[] SPECIALIZATIONS = {"Therapist", "Neurologist", "Rheumatologist", "Pulmonologist",
+            "Cardiologist", "Endocrinologist", "Oncologist", "Orthopedist", "Gastroenterologist", "Allergist",
+            "Otolaryngologist", "Nephrologist", "Surgeon", "Ophthalmologist", "Dietitian", "Hematologist",
+            "Psychologist", "Psychiatrist", "Dermatologist", "Urologist"};
+    private static final String[] STATUSES = {"Accepted", "Waiting", "Canceled"};
+
+    /** Описание параметров {@link #setOption} для справки командной строки. */
+    static final String OPTIONS_HELP =
+            "  --doctors N          число различных врачей (26)\n"
+            + "  --diseases N         число различных болезней (" + DISEASES.length + ")\n"
+            + "  --specializations N  число специализаций (" + SPECIALIZATIONS.length + ")\n"
+            + "  --from dd.MM.yyyy    первая дата приёма (01.01.2024)\n"
+            + "  --to dd.MM.yyyy      последняя дата приёма (31.12.2024)\n"
+            + "  --status A,W,C       доли статусов Accepted, Waiting, Canceled (60,30,10)\n"
+            + "  --latin доля         доля имён латиницей, 0..1 (0.5)\n";
+
+    private final Random random;
+    private int doctorCount = 26;
+    private int diseaseCount = DISEASES.length;
+    private int specializationCount = SPECIALIZATIONS.length;
+    private LocalDate from = LocalDate.of(2024, 1, 1);
+    private LocalDate to = LocalDate.of(2024, 12, 31);
+    private int[] statusWeights = {60, 30, 10};
+    private double latinShare = 0.5;
+
+    // Значения, собранные по настройкам при первой строке
+    private boolean prepared;
+    private String[] doctors;
+    private String[] doctorSpecializations;
+    private String[] diseases;
+    private int firstDay; // epoch day
+    private int dayCount;
+
+    /**
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public DatasetGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /** Число различных врачей (у каждого своя фамилия и одна специализация). */
+    public DatasetGenerator setDoctors(int count) {
+        doctorCount = positive(count, "врачей");
+        prepared = false;
+        return this;
+    }
+
+    /** Число различных болезней. */
+    public DatasetGenerator setDiseases(int count) {
+        diseaseCount = positive(count, "болезней");
+        prepared = false;
+        return this;
+    }
+
+    /** Число различных специализаций врачей. */
+    public DatasetGenerator setSpecializations(int count) {
+        specializationCount = positive(count, "специализаций");
+        prepared = false;
+        return this;
+    }
+
+    /** Диапазон дат приёма (включительно). */
+    public DatasetGenerator setDateRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Конец диапазона дат раньше начала: " + from + " - " + to);
+        }
+        this.from = from;
+        this.to = to;
+        prepared = false;
+        return this;
+    }
+
+    /** Относительные доли статусов Accepted, Waiting и Canceled (например 60, 30, 10). */
+    public DatasetGenerator setStatusMix(int accepted, int waiting, int canceled) {
+        if (accepted < 0 || waiting < 0 || canceled < 0 || accepted + waiting + canceled == 0) {
+            throw new IllegalArgumentException("Некорректные доли статусов");
+        }
+        statusWeights = new int[]{accepted, waiting, canceled};
+        return this;
+    }
+
+    /** Доля имён латиницей, от 0 (все кириллицей) до 1 (все латиницей). */
+    public DatasetGenerator setLatinShare(double share) {
+        if (share < 0 || share > 1) {
+            throw new IllegalArgumentException("Доля латиницы должна быть от 0 до 1: " + share);
+        }
+        latinShare = share;
+        return this;
+    }
+
+    /**
+     * Следующая строка: имя, болезнь, врач, специализация, дата, статус.
+     */
+    public String[] nextRow() {
+        if (!prepared) {
+            prepare();
+        }
+        int doctor = skewed(doctors.length);
+        return new String[]{
+                nextName(),
+                diseases[skewed(diseases.length)],
+                doctors[doctor],
+                doctorSpecializations[doctor],
+                AppointmentDates.format(firstDay + random.nextInt(dayCount)),
+                nextStatus()};
+    }
+
+    /**
+     * Несколько строк сразу (для заполнения модели в памяти).
+     * @param count число строк
+     */
+    public List<Object[]> rows(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(nextRow());
+        }
+        return rows;
+    }
+
+    /**
+     * Потоково пишет файл из {@code count} строк (атомарно, как обычное сохранение).
+     * @param file файл XML
+     * @param count число строк
+     * @throws IOException при ошибке записи
+     */
+    public void writeXML(File file, int count) throws IOException {
+        XMLfile.writeXML(count, this::nextRow, file);
+    }
+
+    /**
+     * Применяет настройку из командной строки.
+     * @param name имя параметра без {@code --}
+     * @param value значение
+     * @return {@code false}, если такого параметра у генератора нет
+     * @throws IllegalArgumentException если значение некорректно
+     */
+    public boolean setOption(String name, String value) {
+        switch (name) {
+            case "doctors":
+                setDoctors(Integer.parseInt(value));
+                return true;
+            case "diseases":
+                setDiseases(Integer.parseInt(value));
+                return true;
+            case "specializations":
+                setSpecializations(Integer.parseInt(value));
+                return true;
+            case "from":
+                setDateRange(LocalDate.parse(value, DATE_FORMAT), to);
+                return true;
+            case "to":
+                setDateRange(from, LocalDate.parse(value, DATE_FORMAT));
+                return true;
+            case "status": {
+                String[] parts = value.split(",");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Доли статусов задаются тремя числами: Accepted,Waiting,Canceled");
+                }
+                setStatusMix(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()));
+                return true;
+            }
+            case "latin":
+                setLatinShare(Double.parseDouble(value));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Генерация файла из командной строки:
+     * {@code DatasetGenerator <файл.xml> <строк> [--seed N] [параметры]}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: DatasetGenerator <файл.xml> <строк> [--seed N] [параметры]\n"
+                    + "  --seed N             начальное значение генератора (1)\n" + OPTIONS_HELP);
+            return;
+        }
+        File file = new File(args[0]);
+        int count = Integer.parseInt(args[1]);
+        long seed = 1;
+        List<String[]> options = new ArrayList<>();
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if ("--seed".equals(args[i])) {
+                seed = Long.parseLong(args[i + 1]);
+            } else {
+                options.add(new String[]{args[i], args[i + 1]});
+            }
+        }
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        for (String[] option : options) {
+            if (!option[0].startsWith("--") || !generator.setOption(option[0].substring(2), option[1])) {
+                throw new IllegalArgumentException("Неизвестный параметр: " + option[0]);
+            }
+        }
+
+        long start = System.nanoTime();
+        generator.writeXML(file, count);
+        System.out.println("Записано строк: " + count + " в " + file + " за "
+                + (System.nanoTime() - start) / 1_000_000 + " мс");
+    }
+
+    private void prepare() {
+        String[] specializations = new String[specializationCount];
+        for (int i = 0; i < specializationCount; i++) {
+            specializations[i] = numbered(SPECIALIZATIONS, i);
+        }
+        doctors = new String[doctorCount];
+        doctorSpecializations = new String[doctorCount];
+        for (int i = 0; i < doctorCount; i++) {
+            String[] surname = SURNAMES[i % SURNAMES.length];
+            doctors[i] = "Doctor " + surname[1] + (i < SURNAMES.length ? "" : " " + (i / SURNAMES.length + 1));
+            doctorSpecializations[i] = specializations[i % specializationCount];
+        }
+        diseases = new String[diseaseCount];
+        for (int i = 0; i < diseaseCount; i++) {
+            diseases[i] = numbered(DISEASES, i);
+        }
+        firstDay = (int) from.toEpochDay();
+        dayCount = (int) (to.toEpochDay() - from.toEpochDay() + 1);
+        prepared = true;
+    }
+
+    // Значение из списка, а когда список кончается — с номером («Asthma 2»)
+    private static String numbered(String[] values, int i) {
+        return i < values.length ? values[i] : values[i % values.length] + " " + (i / values.length + 1);
+    }
+
+    private String nextName() {
+        boolean female = random.nextBoolean();
+        int script = random.nextDouble() < latinShare ? 1 : 0;
+        String[][] names = female ? FEMALE_NAMES : MALE_NAMES;
+        String first = names[random.nextInt(names.length)][script];
+        String last = SURNAMES[random.nextInt(SURNAMES.length)][script];
+        return first + " " + (female ? last + (script == 1 ? "a" : "а") : last);
+    }
+
+    private String nextStatus() {
+        int total = statusWeights[0] + statusWeights[1] + statusWeights[2];
+        int pick = random.nextInt(total);
+        for (int i = 0; i < STATUSES.length; i++) {
+            pick -= statusWeights[i];
+            if (pick < 0) {
+                return STATUSES[i];
+            }
+        }
+        return STATUSES[STATUSES.length - 1];
+    }
+
+    // Индекс от 0 до n-1, меньшие чаще больших (первые значения «популярнее»)
+    private int skewed(int n) {
+        return random.nextInt(random.nextInt(n) + 1);
+    }
+
+    private static int positive(int count, String what) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Число " + what + " должно быть больше нуля: " + count);
+        }
+        return count;
+    }
+}
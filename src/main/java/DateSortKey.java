@@ -0,0 +1,46 @@
+/**
+ * Ключ сортировки для колонки даты приёма.
+ * Создаётся один раз на каждую различную дату в модели (а не на каждое сравнение),
+ * поэтому сортировка сравнивает готовые номера дней без разбора строк и без выделения памяти.
+ * Некорректные даты (которые не удалось разобрать) идут после всех корректных и
+ * упорядочены между собой по исходным строкам — так порядок остаётся транзитивным.
+ */
+public final class DateSortKey implements Comparable<DateSortKey> {
+
+    private final int epochDay;
+    private final String text;
+
+    /**
+     * @param epochDay номер дня от 1970-01-01 или {@link AppointmentDates#NO_DATE}
+     * @param text исходная строка даты
+     */
+    public DateSortKey(int epochDay, String text) {
+        this.epochDay = epochDay;
+        this.text = text;
+    }
+
+    /**
+     * Номер дня от 1970-01-01 или {@link AppointmentDates#NO_DATE}, если дата некорректна.
+     */
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    @Override
+    public int compareTo(DateSortKey other) {
+        boolean valid = epochDay != AppointmentDates.NO_DATE;
+        boolean otherValid = other.epochDay != AppointmentDates.NO_DATE;
+        if (valid && otherValid) {
+            return Integer.compare(epochDay, other.epochDay);
+        }
+        if (valid != otherValid) {
+            return valid ? -1 : 1;
+        }
+        return text.compareTo(other.text);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
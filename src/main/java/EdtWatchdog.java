@@ -0,0 +1,204 @@
+import javax.swing.AbstractButton;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.InvocationEvent;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Сторож потока событий (EDT): замечает события, обработка которых держит поток дольше порога,
+ * и записывает, что именно в этот момент выполнялось.
+ * <p>
+ * Включается системным свойством {@code -Dclinic.edtWatchdog=<порог, мс>}; журнал пишется
+ * в {@code -Dclinic.edtWatchdog.log=<файл>} (по умолчанию {@code edt-stalls.log}). Для каждого
+ * зависания в журнал попадают стек EDT в момент превышения порога, событие (для кнопок и пунктов
+ * меню — их текст) и обработчик — первый кадр стека из кода приложения, например
+ * {@code Listeners.lambda$getSaveToPathDataListener$7}. Когда событие наконец обработано,
+ * в журнал дописывается полное время. В {@link Metrics}: счётчики {@code edt.stall} и
+ * {@code edt.stall.<обработчик>}, гистограмма длительностей {@code edt.stall.ms}.
+ * <p>
+ * Время отсчитывается от начала обработки самого вложенного события: пока модальный диалог
+ * крутит свой цикл событий, поток не считается занятым.
+ */
+public final class EdtWatchdog {
+
+    /** Системное свойство с порогом в миллисекундах (если не задано — сторож не ставится). */
+    public static final String THRESHOLD_PROPERTY = "clinic.edtWatchdog";
+    /** Системное свойство с файлом журнала зависаний. */
+    public static final String LOG_PROPERTY = "clinic.edtWatchdog.log";
+
+    private static EdtWatchdog installed;
+
+    private final long thresholdNanos;
+    private final File logFile;
+
+    // Текущее обрабатываемое событие; пишется только в EDT, читается потоком сторожа
+    private volatile long dispatchStart;   // 0 — поток свободен
+    private volatile long dispatchSeq;
+    private volatile AWTEvent dispatchEvent;
+    private volatile Thread dispatchThread;
+    private volatile long reportedSeq = -1; // событие, о котором уже написали в журнал
+    private long lastSeq;                   // последний выданный номер (только EDT), номера не повторяются
+
+    private EdtWatchdog(long thresholdMs, File logFile) {
+        this.thresholdNanos = thresholdMs * 1_000_000;
+        this.logFile = logFile;
+    }
+
+    /**
+     * Ставит сторожа, если задано свойство {@value #THRESHOLD_PROPERTY}.
+     */
+    public static void installFromSystemProperties() {
+        String threshold = System.getProperty(THRESHOLD_PROPERTY);
+        if (threshold != null) {
+            install(Long.parseLong(threshold.trim()), new File(System.getProperty(LOG_PROPERTY, "edt-stalls.log")));
+        }
+    }
+
+    /**
+     * Ставит сторожа на системную очередь событий (повторный вызов ничего не меняет).
+     * @param thresholdMs порог занятости EDT в миллисекундах
+     * @param logFile     файл журнала (дописывается)
+     */
+    public static synchronized void install(long thresholdMs, File logFile) {
+        if (installed != null) {
+            return;
+        }
+        if (thresholdMs <= 0) {
+            throw new IllegalArgumentException("Порог должен быть положительным: " + thresholdMs);
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(thresholdMs, logFile);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog.new MonitoredQueue());
+        Thread thread = new Thread(watchdog::watch, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+        installed = watchdog;
+        System.out.println("Сторож EDT: порог " + thresholdMs + " мс, журнал " + logFile.getAbsolutePath());
+    }
+
+    // Поток сторожа: проверяет занятость EDT несколько раз за порог
+    private void watch() {
+        long pause = Math.max(10, thresholdNanos / 4_000_000);
+        while (true) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            long seq = dispatchSeq;
+            long start = dispatchStart;
+            if (start == 0 || seq == reportedSeq || System.nanoTime() - start < thresholdNanos) {
+                continue;
+            }
+            AWTEvent event = dispatchEvent;
+            Thread thread = dispatchThread;
+            StackTraceElement[] stack = thread.getStackTrace();
+            if (seq != dispatchSeq) {
+                continue; // событие успело закончиться, стек уже о другом
+            }
+            reportedSeq = seq;
+            String handler = findHandler(stack);
+            Metrics.increment("edt.stall");
+            Metrics.increment("edt.stall." + handlerName(handler));
+
+            StringBuilder entry = new StringBuilder();
+            entry.append("=== ").append(LocalDateTime.now().withNano(0)).append(" EDT занят ")
+                    .append((System.nanoTime() - start) / 1_000_000).append(" мс (порог ")
+                    .append(thresholdNanos / 1_000_000).append(" мс)\n");
+            entry.append("Событие: ").append(describe(event)).append('\n');
+            entry.append("Обработчик: ").append(handler).append('\n');
+            for (StackTraceElement frame : stack) {
+                entry.append("\tat ").append(frame).append('\n');
+            }
+            log(entry.toString());
+        }
+    }
+
+    // Вызывается в EDT, когда событие, о котором уже написали, наконец обработано
+    private void stallFinished(long nanos) {
+        Metrics.record("edt.stall.ms", nanos / 1_000_000);
+        log("--- событие обработано за " + nanos / 1_000_000 + " мс\n");
+    }
+
+    private synchronized void log(String text) {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(logFile, true), StandardCharsets.UTF_8))) {
+            out.print(text);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static String describe(AWTEvent event) {
+        if (event == null) {
+            return "неизвестно";
+        }
+        Object source = event.getSource();
+        String from = source == null ? "" : " от " + source.getClass().getSimpleName();
+        if (source instanceof AbstractButton && ((AbstractButton) source).getText() != null) {
+            from += " «" + ((AbstractButton) source).getText() + "»";
+        }
+        if (event instanceof ActionEvent) {
+            return "ActionEvent" + from + " (команда «" + ((ActionEvent) event).getActionCommand() + "»)";
+        }
+        if (event instanceof InvocationEvent) {
+            return "InvocationEvent" + from; // invokeLater: обработчик виден по стеку
+        }
+        return event.getClass().getSimpleName() + from + " (" + event.paramString() + ")";
+    }
+
+    // Первый кадр из кода приложения (не из JDK), начиная с вершины стека
+    private static String findHandler(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (!className.startsWith("java.") && !className.startsWith("javax.") && !className.startsWith("sun.")
+                    && !className.startsWith("jdk.") && !className.startsWith("com.sun.")
+                    && !className.startsWith(EdtWatchdog.class.getName())) {
+                return className + "." + frame.getMethodName() + "(" + frame.getFileName() + ":" + frame.getLineNumber() + ")";
+            }
+        }
+        return "код JDK";
+    }
+
+    // "Listeners.lambda$getSaveToPathDataListener$7(Listeners.java:123)" -> "Listeners.getSaveToPathDataListener"
+    private static String handlerName(String handler) {
+        int paren = handler.indexOf('(');
+        String name = paren >= 0 ? handler.substring(0, paren) : handler;
+        name = name.replace("lambda$", "").replaceAll("\\$\\d+$", "");
+        return name.replaceAll("\\s", "_");
+    }
+
+    // Очередь событий, отмечающая начало и конец обработки каждого события
+    private class MonitoredQueue extends EventQueue {
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            AWTEvent outerEvent = dispatchEvent;
+            boolean nested = dispatchStart != 0;
+
+            dispatchThread = Thread.currentThread();
+            dispatchEvent = event;
+            dispatchSeq = ++lastSeq;
+            long start = System.nanoTime();
+            dispatchStart = start;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                if (reportedSeq == dispatchSeq) { // номер мог смениться после вложенных событий
+                    stallFinished(System.nanoTime() - start);
+                }
+                // Внешнее событие (например, открывшее модальный диалог) снова обрабатывается,
+                // отсчёт для него начинается заново под новым номером
+                dispatchEvent = outerEvent;
+                dispatchSeq = ++lastSeq;
+                dispatchStart = nested ? System.nanoTime() : 0;
+            }
+        }
+    }
+}
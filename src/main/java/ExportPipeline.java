@@ -0,0 +1,300 @@
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер выгрузки по кнопке "Поток" (замена прежней цепочки из трёх потоков с общим монитором).
+ * <p>
+ * Этапы:
+ * <ol>
+ *     <li>снимок модели в потоке Swing (EDT) — единственный этап, который трогает таблицу;</li>
+ *     <li>параллельно на пуле потоков: запись XML из снимка, HTML отчёт и PDF отчёт
+ *     (отчёты строятся прямо по снимку, без ожидания записи на диск).</li>
+ * </ol>
+ * Время каждого этапа выводится в консоль, попадает в {@link Metrics} и передаётся слушателю.
+ * Повторные нажатия во время выполнения не создают новых потоков: запоминается только самый
+ * свежий снимок, и после окончания текущего прогона выполняется ровно один следующий. Прогон можно отменить:
+ * ещё не начатые этапы пропускаются, а начатые (запись XML и отчёты не прерываются) дорабатывают,
+ * и следующий прогон начинается только после них, чтобы два прогона не писали одни и те же файлы.
+ * Если для файла XML ведётся журнал изменений ({@link ChangeJournal}), XML записывается через
+ * журнал с отметкой номера его последней записи на момент снимка, иначе журнал бы устарел.
+ * Все методы, кроме самих этапов и {@link #awaitIdle(long)}, вызываются в потоке Swing.
+ */
+public class ExportPipeline {
+
+    private final ExecutorService executor;
+    private final File xmlFile;
+    private final String htmlTemplate;
+    private final String htmlOutput;
+    private final String pdfTemplate;
+    private final String pdfOutput;
+    private final Consumer<String> statusListener;
+
+    private Run current;                // выполняющийся или отменяемый прогон
+    private Request pending;            // снимок для следующего прогона (после текущего)
+
+    private final Object idleLock = new Object();
+    private boolean busy;               // есть текущий или отложенный прогон (под idleLock, для awaitIdle)
+
+    /**
+     * @param xmlFile        файл, куда сохраняется таблица
+     * @param htmlTemplate   шаблон HTML отчёта (.jrxml)
+     * @param htmlOutput     путь HTML отчёта
+     * @param pdfTemplate    шаблон PDF отчёта (.jrxml)
+     * @param pdfOutput      путь PDF отчёта
+     * @param statusListener получает краткий итог прогона (в потоке Swing), может быть {@code null}
+     */
+    public ExportPipeline(File xmlFile, String htmlTemplate, String htmlOutput,
+                          String pdfTemplate, String pdfOutput, Consumer<String> statusListener) {
+        this.xmlFile = xmlFile;
+        this.htmlTemplate = htmlTemplate;
+        this.htmlOutput = htmlOutput;
+        this.pdfTemplate = pdfTemplate;
+        this.pdfOutput = pdfOutput;
+        this.statusListener = statusListener;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(3, r -> {
+            Thread thread = new Thread(r, "export-pipeline-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запрашивает прогон по текущим данным таблицы. Если прогон уже идёт, данные запоминаются
+     * и будут выгружены сразу после него (несколько нажатий подряд дают один прогон).
+     * @param tableModel модель таблицы
+     */
+    public void request(PatientTableModel tableModel) {
+        request(tableModel, null);
+    }
+
+    /**
+     * То же, что {@link #request(PatientTableModel)}, с учётом журнала изменений.
+     * @param tableModel модель таблицы
+     * @param journal    открытый журнал изменений или {@code null}
+     */
+    public void request(PatientTableModel tableModel, ChangeJournal journal) {
+        long start = System.nanoTime();
+        Request request = new Request();
+        request.snapshot = tableModel.snapshot();
+        if (journal != null && journal.getXmlFile().getAbsoluteFile().equals(xmlFile.getAbsoluteFile())) {
+            request.journal = journal;
+            request.journalSeq = journal.getLastSeq();
+        }
+        long snapshotMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Конвейер: снимок таблицы (" + request.snapshot.getRowCount() + " строк) за " + snapshotMs + " мс");
+
+        if (current != null) {
+            pending = request; // более ранний отложенный снимок просто заменяется
+            System.out.println("Конвейер: прогон уже идёт, следующий выполнится после него");
+            return;
+        }
+        startRun(request);
+    }
+
+    /**
+     * Отменяет текущий прогон и отложенный запрос. Прогон считается идущим, пока не
+     * закончатся уже начатые этапы; запрошенный за это время прогон начнётся после них.
+     */
+    public void cancel() {
+        pending = null;
+        if (current != null && !current.cancelled) {
+            Run run = current;
+            run.cancelled = true;
+            for (Run.Step step : run.steps) {
+                if (step.claimed.compareAndSet(false, true)) {
+                    step.future.cancel(false); // этап не начался и уже не начнётся
+                    run.stageDone();
+                } else {
+                    step.future.cancel(true); // прерывание — на случай, если этап его проверяет
+                }
+            }
+            System.out.println("Конвейер: отмена, ждём начатые этапы");
+            if (statusListener != null) {
+                statusListener.accept("Поток: отмена...");
+            }
+        }
+    }
+
+    /**
+     * Идёт ли сейчас прогон (в том числе отменяемый, этапы которого ещё работают).
+     */
+    public boolean isRunning() {
+        return current != null;
+    }
+
+    /**
+     * Ждёт окончания текущего и отложенного прогонов (например, перед выходом из программы:
+     * потоки конвейера — демоны и не держат программу). Вызывать не в потоке Swing — окончание
+     * прогона обрабатывается в нём.
+     * @param timeoutMs сколько ждать не дольше, мс
+     * @return {@code true}, если прогонов не осталось
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (idleLock) {
+            while (busy) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                idleLock.wait(left);
+            }
+        }
+        return true;
+    }
+
+    private void setBusy(boolean value) {
+        synchronized (idleLock) {
+            busy = value;
+            idleLock.notifyAll();
+        }
+    }
+
+    private void startRun(Request request) {
+        setBusy(true);
+        PatientSnapshot snapshot = request.snapshot;
+        Run run = new Run(snapshot.getRowCount());
+        current = run;
+        // Пока этапы ставятся в пул, прогон держит лишний счёт: быстро упавший первый этап
+        // не должен завершить прогон до того, как поставлены остальные
+        run.remaining.incrementAndGet();
+        if (request.journal != null) {
+            run.submit("XML", () -> request.journal.checkpoint(snapshot, request.journalSeq));
+        } else {
+            run.submit("XML", () -> XMLfile.writeXMLWithSnapshot(snapshot, xmlFile, null));
+        }
+        run.submit("HTML", () -> new ReportGenerator().generateHtmlReport(htmlTemplate, snapshot, htmlOutput));
+        run.submit("PDF", () -> new ReportGenerator().generatePdfReport(pdfTemplate, snapshot, pdfOutput));
+        run.stageDone();
+    }
+
+    // Вызывается в потоке Swing, когда все этапы прогона завершились
+    private void finished(Run run) {
+        current = null;
+        if (run.cancelled) {
+            run.operation.detail("отменён").close();
+            System.out.println("Конвейер: прогон отменён");
+            if (statusListener != null) {
+                statusListener.accept("Поток: отменено");
+            }
+            startPending();
+            return;
+        }
+
+        StringBuilder summary = new StringBuilder("Поток:");
+        boolean failed = false;
+        synchronized (run.results) {
+            for (Map.Entry<String, String> result : run.results.entrySet()) {
+                summary.append(' ').append(result.getKey()).append(' ').append(result.getValue());
+                failed |= result.getValue().startsWith("ошибка");
+            }
+        }
+        long totalMs = (System.nanoTime() - run.startNanos) / 1_000_000;
+        summary.append(", всего ").append(totalMs).append(" мс");
+        System.out.println("Конвейер: " + summary + (failed ? " (с ошибками)" : ""));
+        if (!failed) {
+            run.operation.succeeded();
+        }
+        run.operation.close();
+        if (statusListener != null) {
+            statusListener.accept(summary.toString());
+        }
+
+        startPending();
+    }
+
+    private void startPending() {
+        if (pending != null) {
+            Request next = pending;
+            pending = null;
+            startRun(next);
+        } else {
+            setBusy(false);
+        }
+    }
+
+    // Запрошенный прогон: снимок и (если есть) журнал с номером записи на момент снимка
+    private static class Request {
+        PatientSnapshot snapshot;
+        ChangeJournal journal;
+        long journalSeq;
+    }
+
+    // Этап конвейера
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    // Один прогон: набор параллельных этапов и их результаты
+    private class Run {
+        final long startNanos = System.nanoTime();
+        final List<Step> steps = new ArrayList<>();
+        final Map<String, String> results = new LinkedHashMap<>();
+        final AtomicInteger remaining = new AtomicInteger();
+        final int rows;
+        final Metrics.Operation operation; // весь прогон, от запуска до последнего этапа
+        boolean cancelled;                 // только EDT
+
+        // Этап в пуле; claimed занимает либо сам этап при запуске, либо отмена (тогда этап пропускается)
+        class Step {
+            final AtomicBoolean claimed = new AtomicBoolean();
+            Future<?> future;
+        }
+
+        Run(int rows) {
+            this.rows = rows;
+            this.operation = Metrics.begin("pipeline.run").rows(rows);
+        }
+
+        void submit(String name, Stage stage) {
+            synchronized (results) {
+                results.put(name, "ожидает");
+            }
+            remaining.incrementAndGet();
+            Step step = new Step();
+            steps.add(step);
+            step.future = executor.submit(() -> {
+                if (!step.claimed.compareAndSet(false, true)) {
+                    return; // прогон отменён до начала этапа
+                }
+                long start = System.nanoTime();
+                String result = null;
+                try (Metrics.Operation op = Metrics.begin("pipeline." + name.toLowerCase()).rows(rows)) {
+                    stage.run();
+                    op.succeeded();
+                    result = (System.nanoTime() - start) / 1_000_000 + " мс";
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    result = "ошибка (" + ex.getMessage() + ")";
+                } catch (Error err) {
+                    result = "ошибка (" + err + ")"; // например, нехватка памяти при заполнении отчёта
+                    throw err;
+                } finally {
+                    // Этап завершается при любом исходе, иначе прогон остался бы текущим навсегда
+                    System.out.println("Конвейер: этап " + name + " — " + result);
+                    synchronized (results) {
+                        results.put(name, result);
+                    }
+                    stageDone();
+                }
+            });
+        }
+
+        void stageDone() {
+            if (remaining.decrementAndGet() == 0) {
+                SwingUtilities.invokeLater(() -> finished(this));
+            }
+        }
+    }
+}
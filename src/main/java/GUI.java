@@ -1,35 +1,33 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.*;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableCellRenderer;
-import javax.swing.table.TableRowSorter;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
-import java.util.Comparator;
-import java.util.Date;
 
 public class GUI extends JFrame {
 
 
-    private static final Object monitor = new Object();
-    private static boolean isXmlGenerated;
-    private static boolean isDataLoaded;
-
     JMenuBar menuBar;
     JMenu fileMenu;
-    JMenuItem openItem, saveItem, exportPdfItem, exportHtmlItem;
+    JMenuItem openItem, saveItem, exportPdfItem, exportHtmlItem, exportCsvTableItem, exportHtmlTableItem,
+            archiveItem, metricsItem, statisticsItem;
+    JCheckBoxMenuItem journalItem;
     JToolBar toolBar;
     JButton saveButton, addButton, deleteButton;
-    JButton searchButton;
-    JButton startTreadsButton;
+    JButton searchButton, findAllButton;
+    JButton startTreadsButton, stopTreadsButton;
     JComboBox<String> searchType;
     JComboBox<String> sortType;
+    JCheckBox liveFilterBox;
     JTextField searchField;
     JTable dataTable;
-    private DefaultTableModel tableModel;
+    private PatientTableModel tableModel;
     static File openedFile = new File("src/docs/mainReport.xml");
+    // Режим журнала изменений (включается в меню или -Dclinic.journal=true) и открытый журнал
+    static boolean journalMode = Boolean.getBoolean("clinic.journal");
+    static ChangeJournal changeJournal;
     private JLabel status = new JLabel();
+    private ExportPipeline exportPipeline;
 
 
     public GUI() {
@@ -60,11 +58,24 @@ public class GUI extends JFrame {
         saveItem = new JMenuItem("Сохранить");
         exportPdfItem = new JMenuItem("Экспорт отчета в PDF");
         exportHtmlItem = new JMenuItem("Экспорт отчета в HTML");
+        exportCsvTableItem = new JMenuItem("Выгрузить таблицу в CSV");
+        exportHtmlTableItem = new JMenuItem("Выгрузить таблицу в HTML");
+        archiveItem = new JMenuItem("Открыть архив");
+        metricsItem = new JMenuItem("Сохранить метрики");
+        statisticsItem = new JMenuItem("Статистика");
+        journalItem = new JCheckBoxMenuItem("Журнал изменений", journalMode);
+        journalItem.setToolTipText("Сохранять только изменения, а не весь файл");
 
         fileMenu.add(openItem);
+        fileMenu.add(archiveItem);
         fileMenu.add(saveItem);
+        fileMenu.add(journalItem);
         fileMenu.add(exportPdfItem);
         fileMenu.add(exportHtmlItem);
+        fileMenu.add(exportCsvTableItem);
+        fileMenu.add(exportHtmlTableItem);
+        fileMenu.add(statisticsItem);
+        fileMenu.add(metricsItem);
         menuBar.add(fileMenu);
         setJMenuBar(menuBar);
 
@@ -83,11 +94,22 @@ public class GUI extends JFrame {
         toolBar.add(new JLabel("       "));
         toolBar.add(status);
 
-        // Панель для потоков
+        // Панель для потоков: снимок таблицы -> XML, HTML и PDF параллельно
+        JLabel pipelineStatus = new JLabel();
+        exportPipeline = new ExportPipeline(new File("src/docs/mainReport.xml"),
+                "src/docs/ClinicHTML.jrxml", "src/docs/report.html",
+                "src/docs/ClinicPDF.jrxml", "src/docs/report.pdf", pipelineStatus::setText);
         startTreadsButton = new JButton("Поток");
-        startTreadsButton.addActionListener(e -> startMultithreading(tableModel));
+        startTreadsButton.addActionListener(e -> {
+            pipelineStatus.setText("Поток: выполняется...");
+            exportPipeline.request(tableModel, changeJournal);
+        });
+        stopTreadsButton = new JButton("Стоп");
+        stopTreadsButton.addActionListener(e -> exportPipeline.cancel());
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(pipelineStatus);
         buttonPanel.add(startTreadsButton);
+        buttonPanel.add(stopTreadsButton);
         add(buttonPanel, BorderLayout.SOUTH);
 
         // Панель поиска
@@ -95,6 +117,9 @@ public class GUI extends JFrame {
         searchType = new JComboBox<>(new String[]{"Имени пациента", "Имени врача", "Названию болезни"});
         searchField = new JTextField(25);
         searchButton = new JButton("Поиск");
+        findAllButton = new JButton("Найти все");
+        liveFilterBox = new JCheckBox("Фильтр");
+        liveFilterBox.setToolTipText("Фильтровать таблицу по мере ввода");
 
         String placeholder = "Поиск..";
         searchField.setText(placeholder);
@@ -105,6 +130,8 @@ public class GUI extends JFrame {
         searchPanel.add(searchType);
         searchPanel.add(searchField);
         searchPanel.add(searchButton);
+        searchPanel.add(findAllButton);
+        searchPanel.add(liveFilterBox);
 
         // Контейнер для обеих частей (панель инструментов + панель поиска)
         JPanel topPanel = new JPanel(new GridLayout(1, 2));
@@ -113,69 +140,38 @@ public class GUI extends JFrame {
         add(topPanel, BorderLayout.NORTH);
 
         // Таблица
-        String[] columns = {"Фамилия Имя", "Диагноз", "Специалист", "Специализация врача", "Дата приёма", "Статус приёма"};
-        tableModel = new DefaultTableModel(new Object[][]{}, columns);
+        tableModel = new PatientTableModel(); // колонки: см. PatientTableModel.COLUMN_NAMES
 
-        dataTable = new JTable(tableModel) {
-            @Override
-            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
-                Component cell = super.prepareRenderer(renderer, row, column);
-                if (column == 5) {
-                    String status = (String) getValueAt(row, column);
-                    switch (status) {
-                        case "Accepted":
-                            cell.setBackground(Color.GREEN);
-                            break;
-                        case "Waiting":
-                            cell.setBackground(Color.YELLOW);
-                            break;
-                        case "Canceled":
-                            cell.setBackground(Color.RED);
-                            break;
-                        default:
-                            cell.setBackground(Color.WHITE);
-                            break;
-                    }
-                } else {
-                    cell.setBackground(Color.WHITE);
-                }
-                return cell;
-            }
-        };
+        // Сводка по врачам, статусам и датам ведётся по событиям модели с самого начала
+        PatientStatistics statistics = new PatientStatistics(tableModel);
+
+        dataTable = new JTable(tableModel);
+        // Цвет статуса рисует отрисовщик ячеек, без переопределения prepareRenderer
+        dataTable.setDefaultRenderer(String.class, new StatusCellRenderer());
         JScrollPane tableScrollPane = new JScrollPane(dataTable);
         add(tableScrollPane, BorderLayout.CENTER);
 
-        // Сортировка
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
+        // Сортировка (даты сравниваются по заранее разобранным ключам, см. PatientRowSorter)
+        PatientRowSorter sorter = new PatientRowSorter(tableModel);
         dataTable.setRowSorter(sorter);
-        Comparator<String> dateComparator = new Comparator<String>() {
-            @Override
-            public int compare(String dateStr1, String dateStr2) {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yyyy");
-                try {
-                    Date d1 = sdf.parse(dateStr1);
-                    Date d2 = sdf.parse(dateStr2);
-                    return d1.compareTo(d2);
-                } catch (ParseException e) {
-                    return dateStr1.compareTo(dateStr2);
-                }
-            }
-        };
-        sorter.setComparator(4, dateComparator);
+
+        // Фильтр по мере ввода (включается флажком "Фильтр")
+        new LiveFilter(tableModel, sorter, searchField, searchType, liveFilterBox, placeholder);
 
         sortType = new JComboBox<>(new String[]{"По имени", "По дате"});
         add(sortType, BorderLayout.EAST);
 
-        // Автозаполнение таблицы
+        // Автозаполнение таблицы (в фоне, строки появляются по мере чтения файла; затем журнал изменений)
         if (openedFile.exists()) {
-            XMLfile.loadFromXML(tableModel, openedFile);
+            Listeners.loadData(tableModel, openedFile, this, status, null);
         } else {
             JOptionPane.showMessageDialog(this, "Файл данных не найден: " + xmlFilePath,
                     "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
 
         // Слушатели (Action)
-        searchButton.addActionListener(Listeners.getSearchListener(dataTable, searchField, searchType, this));
+        searchButton.addActionListener(Listeners.getSearchListener(dataTable, tableModel, searchField, searchType, this));
+        findAllButton.addActionListener(Listeners.getFindAllListener(dataTable, tableModel, searchField, searchType, this));
         saveButton.addActionListener(Listeners.getSaveDataListener(this, tableModel, status));
         addButton.addActionListener(Listeners.getAddPatientListener(tableModel, status));
         deleteButton.addActionListener(Listeners.getDeletePatientListener(tableModel, dataTable, this, status));
@@ -185,69 +181,69 @@ public class GUI extends JFrame {
         sortType.addActionListener(Listeners.getSortTypeActionListener(sortType, this, sorter));
 
         // Слушатели для меню
-        openItem.addActionListener(Listeners.getLoadDataListener(tableModel, this));
+        openItem.addActionListener(Listeners.getLoadDataListener(tableModel, this, status));
+        archiveItem.addActionListener(Listeners.getOpenArchiveListener(this));
+        journalItem.addActionListener(Listeners.getJournalModeListener(tableModel, journalItem, status));
         saveItem.addActionListener(Listeners.getSaveToPathDataListener(this, tableModel, status));
-        exportPdfItem.addActionListener(Listeners.getExportPdfReportListener(this,
+        exportPdfItem.addActionListener(Listeners.getExportPdfReportListener(this, tableModel,
                 "src/docs/ClinicPDF.jrxml", "src/docs/report.pdf"));
-        exportHtmlItem.addActionListener(Listeners.getExportHtmlReportListener(this,
+        exportHtmlItem.addActionListener(Listeners.getExportHtmlReportListener(this, tableModel,
                 "src/docs/ClinicHTML.jrxml", "src/docs/report.html"));
-    }
-
-    /**
-     * Запуск потоков, как у вас раньше.
-     */
-    private void startMultithreading(DefaultTableModel tableModel) {
-        isXmlGenerated = false;
-        isDataLoaded = false;
-
-        Thread dataLoader = new Thread(() -> {
-            synchronized (monitor) {
-                System.out.println("Первый поток: Данные загружены");
-                isDataLoaded = true;
-                monitor.notifyAll();
+        exportCsvTableItem.addActionListener(Listeners.getExportTableListener(this, dataTable, tableModel,
+                TableExport.Format.CSV));
+        exportHtmlTableItem.addActionListener(Listeners.getExportTableListener(this, dataTable, tableModel,
+                TableExport.Format.HTML));
+        statisticsItem.addActionListener(Listeners.getOpenStatisticsListener(this, statistics));
+        metricsItem.addActionListener(Listeners.getSaveMetricsListener(this));
+
+        // Перед выходом дожидаемся фоновых сохранений и прогона "Поток" и сбрасываем на диск
+        // несохранённые записи журнала; ожидание идёт в фоне, окно показывает, что программа сохраняет данные
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                awaitSavesBeforeExit();
             }
         });
+    }
 
-        Thread xmlEditor = new Thread(() -> {
-            synchronized (monitor) {
-                try {
-                    while (!isDataLoaded) {
-                        monitor.wait();
-                    }
-                    System.out.println("Второй поток формирует XML..");
-                    XMLfile.saveToXML(tableModel, new File("src/docs/mainReport.xml"));
-                    System.out.println("Второй поток: XML успешно сохранен!");
-                    isXmlGenerated = true;
-                    monitor.notifyAll();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+    private void awaitSavesBeforeExit() {
+        JDialog dialog = new JDialog(this, "Выход", true);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        panel.add(new JLabel("Сохранение..."), BorderLayout.NORTH);
+        panel.add(progress, BorderLayout.CENTER);
+        dialog.add(panel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+
+        ChangeJournal journal = changeJournal;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                // Сначала конвейер: его запись XML идёт через журнал, который закрывается последним
+                long deadline = System.currentTimeMillis() + 60_000;
+                if (!exportPipeline.awaitIdle(60_000)) {
+                    System.out.println("Прогон \"Поток\" не завершился за минуту");
                 }
-            }
-        });
-
-        Thread reportGenerator = new Thread(() -> {
-            synchronized (monitor) {
-                try {
-                    while (!isXmlGenerated) {
-                        monitor.wait();
-                    }
-                    System.out.println("Третий поток: Генерация HTML...");
-                    ReportGenerator generator = new ReportGenerator();
-                    generator.generateHtmlReport(
-                            "src/docs/ClinicHTML.jrxml",
-                            "src/docs/mainReport.xml",
-                            "src/docs/report.html"
-                    );
-                    System.out.println("Третий поток: HTML-отчёт успешно создан!");
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+                if (!IoService.getInstance().awaitIdle(Math.max(0, deadline - System.currentTimeMillis()))) {
+                    System.out.println("Фоновые записи не завершились за минуту");
+                }
+                // Пока открыто модальное окно, таблица не меняется
+                if (journal != null) {
+                    journal.close();
                 }
+                return null;
             }
-        });
 
-        dataLoader.start();
-        xmlEditor.start();
-        reportGenerator.start();
+            @Override
+            protected void done() {
+                dialog.dispose(); // вызывается после показа окна: done() выполняется в потоке Swing
+            }
+        }.execute();
+        dialog.setVisible(true); // до окончания ожидания; события окна при этом обрабатываются
     }
 
     // Статический метод для запроса логина/пароля
@@ -292,6 +288,7 @@ public class GUI extends JFrame {
      * Точка входа (main). Показываем диалог логина, если успех — создаём GUI.
      */
     public static void main(String[] args) {
+        EdtWatchdog.installFromSystemProperties();
         // Показать диалог логина/пароля
         boolean isAuthenticated = showLoginDialog();
         if (isAuthenticated) {
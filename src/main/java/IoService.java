@@ -0,0 +1,173 @@
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Фоновая запись файлов для действий окна (сохранение, экспорт отчётов), чтобы они не держали EDT.
+ * <p>
+ * Действие снимает снимок модели в EDT, отдаёт запись сервису и сразу возвращается; результат
+ * приходит в обработчик завершения, тоже в EDT. Сохранения выполняются по одному в единственном
+ * потоке записи, экспорты — параллельно на небольшом пуле. На каждый файл одновременно идёт не
+ * больше одной записи: если запись в файл уже идёт, новая ждёт её окончания, а если ждущая уже
+ * есть, она заменяется новой (в более свежем снимке есть и прежние изменения). Обработчики
+ * заменённых запросов вызываются по окончании той записи, что их заменила.
+ */
+public class IoService {
+
+    private static final IoService INSTANCE = new IoService();
+
+    private final ExecutorService writer = createExecutor("clinic-io-writer", 1);
+    private final ExecutorService exporter = createExecutor("clinic-io-export",
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)));
+
+    // Записи по файлам: идущая и ждущая (под монитором сервиса)
+    private final Map<File, Slot> slots = new HashMap<>();
+
+    /**
+     * Сервис, общий для всего процесса.
+     */
+    public static IoService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Запись в файл.
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Сохраняет файл в потоке записи; сохранения выполняются строго по очереди.
+     * @param file       файл, в который пишет задача (ключ объединения запросов)
+     * @param task       запись
+     * @param onComplete получает {@code null} при успехе или ошибку (в EDT), может быть {@code null}
+     */
+    public void save(File file, Task task, Consumer<Exception> onComplete) {
+        submit(writer, "io.save", file, task, onComplete);
+    }
+
+    /**
+     * Экспортирует отчёт в пуле экспорта, параллельно с другими экспортами и сохранениями.
+     * @param file       выходной файл (ключ объединения запросов)
+     * @param task       построение и запись отчёта
+     * @param onComplete получает {@code null} при успехе или ошибку (в EDT), может быть {@code null}
+     */
+    public void export(File file, Task task, Consumer<Exception> onComplete) {
+        submit(exporter, "io.export", file, task, onComplete);
+    }
+
+    /**
+     * Ждёт окончания всех начатых и ждущих записей (например, перед выходом из программы).
+     * @param timeoutMs сколько ждать не дольше, мс
+     * @return {@code true}, если записей не осталось
+     */
+    public synchronized boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!slots.isEmpty()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    private synchronized void submit(ExecutorService executor, String metric, File file, Task task,
+                                     Consumer<Exception> onComplete) {
+        File key = file.getAbsoluteFile();
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+        if (slot.pending != null) {
+            // Ждущая запись ещё не начата — достаточно записать более свежие данные
+            slot.pending.task = task;
+            slot.pending.addCallback(onComplete);
+            Metrics.increment(metric + ".coalesced");
+            return;
+        }
+        Job job = new Job(executor, metric, task);
+        job.addCallback(onComplete);
+        if (slot.running != null) {
+            slot.pending = job; // начнётся, когда закончится текущая запись в этот файл
+            return;
+        }
+        slot.running = job;
+        start(key, job);
+    }
+
+    private void start(File key, Job job) {
+        job.executor.execute(() -> {
+            Exception failure = null;
+            try (Metrics.Operation op = Metrics.begin(job.metric).file(key)) {
+                job.task.run();
+                op.succeeded();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                failure = ex;
+            }
+            finished(key, job, failure);
+        });
+    }
+
+    private void finished(File key, Job job, Exception failure) {
+        synchronized (this) {
+            Slot slot = slots.get(key);
+            slot.running = slot.pending;
+            slot.pending = null;
+            if (slot.running != null) {
+                start(key, slot.running);
+            } else {
+                slots.remove(key);
+                notifyAll();
+            }
+        }
+        if (!job.callbacks.isEmpty()) {
+            SwingUtilities.invokeLater(() -> job.callbacks.forEach(callback -> callback.accept(failure)));
+        }
+    }
+
+    private static ExecutorService createExecutor(String name, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true); // перед выходом записи дожидаются через awaitIdle
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class Slot {
+        Job running;
+        Job pending;
+    }
+
+    private static class Job {
+        final ExecutorService executor;
+        final String metric;
+        final List<Consumer<Exception>> callbacks = new ArrayList<>();
+        volatile Task task;
+
+        Job(ExecutorService executor, String metric, Task task) {
+            this.executor = executor;
+            this.metric = metric;
+            this.task = task;
+        }
+
+        void addCallback(Consumer<Exception> callback) {
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+        }
+    }
+}
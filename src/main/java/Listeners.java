@@ -1,5 +1,5 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
@@ -9,6 +9,8 @@ import java.awt.event.ActionListener;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
 
 
 /**
@@ -22,7 +24,7 @@ public class Listeners {
      * @param tableModel модель таблицы, в которую будет добавлен пациент
      * @return ActionListener для добавления нового пациента
      */
-    public static ActionListener getAddPatientListener(DefaultTableModel tableModel, JLabel status1) {
+    public static ActionListener getAddPatientListener(PatientTableModel tableModel, JLabel status1) {
         return e -> {
             try {
                 String name = JOptionPane.showInputDialog("Введите имя пациента:");
@@ -32,31 +34,10 @@ public class Listeners {
                 String date = JOptionPane.showInputDialog("Введите дату приёма (формат dd.MM.yyyy):");
                 String status = JOptionPane.showInputDialog("Введите статус (например, Accepted, Waiting, Canceled):");
 
-                // 1) Проверка, что поля не пустые
-                if (isEmpty(name) || isEmpty(disease) || isEmpty(doctor)
-                        || isEmpty(specialization) || isEmpty(date) || isEmpty(status)) {
-                    throw new IllegalArgumentException("Все поля должны быть заполнены!");
-                }
-
-                // 2) Проверяем, что имя пациента не содержит цифр
-                if (!name.matches("[a-zA-Zа-яА-Я\\s]+")) {
-                    throw new IllegalArgumentException("Имя пациента не может содержать цифр (и иных недопустимых символов)!");
-                }
-
-                // 3) Проверка корректности даты
-                if (!isValidDate(date)) {
-                    throw new IllegalArgumentException("Некорректная дата. Используйте формат dd.MM.yyyy");
-                }
-
-                // 4) Проверяем валидность статуса (пример)
-                String[] validStatuses = {"Accepted", "Waiting", "Canceled"};
-                if (!Arrays.asList(validStatuses).contains(status)) {
-                    throw new IllegalArgumentException("Некорректный статус. Разрешены: " +
-                            String.join(", ", validStatuses));
-                }
-
-                // 5) Если всё ОК, добавляем запись в таблицу
-                tableModel.addRow(new Object[]{name, disease, doctor, specialization, date, status});
+                // Если всё ОК, добавляем запись в таблицу
+                String[] patient = {name, disease, doctor, specialization, date, status};
+                validatePatient(patient);
+                tableModel.addRow(patient);
                 status1.setText("UNSAVED");
 
             } catch (Exception ex) {
@@ -69,6 +50,41 @@ public class Listeners {
             }
         };
     }
+    /**
+     * Проверяет поля нового пациента так же, как при добавлении из окна.
+     * @param patient значения в порядке колонок таблицы
+     * @throws IllegalArgumentException с описанием ошибки, если поле не прошло проверку
+     */
+    static void validatePatient(String[] patient) {
+        String name = patient[PatientTableModel.NAME];
+        String date = patient[PatientTableModel.DATE];
+        String status = patient[PatientTableModel.STATUS];
+
+        // 1) Проверка, что поля не пустые
+        for (String value : patient) {
+            if (isEmpty(value)) {
+                throw new IllegalArgumentException("Все поля должны быть заполнены!");
+            }
+        }
+
+        // 2) Проверяем, что имя пациента не содержит цифр
+        if (!name.matches("[a-zA-Zа-яА-Я\\s]+")) {
+            throw new IllegalArgumentException("Имя пациента не может содержать цифр (и иных недопустимых символов)!");
+        }
+
+        // 3) Проверка корректности даты
+        if (!isValidDate(date)) {
+            throw new IllegalArgumentException("Некорректная дата. Используйте формат dd.MM.yyyy");
+        }
+
+        // 4) Проверяем валидность статуса (пример)
+        String[] validStatuses = {"Accepted", "Waiting", "Canceled"};
+        if (!Arrays.asList(validStatuses).contains(status)) {
+            throw new IllegalArgumentException("Некорректный статус. Разрешены: " +
+                    String.join(", ", validStatuses));
+        }
+    }
+
     /**
      * Вспомогательный метод: проверяет, что строка не null и не пустая
      */
@@ -100,7 +116,7 @@ public class Listeners {
      * @param frame      окно, в котором отображаются сообщения
      * @return ActionListener для удаления пациента
      */
-    public static ActionListener getDeletePatientListener(DefaultTableModel tableModel, JTable dataTable, JFrame frame, JLabel status) {
+    public static ActionListener getDeletePatientListener(PatientTableModel tableModel, JTable dataTable, JFrame frame, JLabel status) {
         return e -> {
             int result = JOptionPane.showConfirmDialog(frame,
                     "Вы уверены что хотите удалить?",
@@ -113,7 +129,8 @@ public class Listeners {
                         int selectedRow = dataTable.getSelectedRow();
                         if (selectedRow != -1) {
                             status.setText("UNSAVED");
-                            tableModel.removeRow(selectedRow);
+                            // Номер строки в таблице — с учётом сортировки и фильтра, удаляем по номеру в модели
+                            tableModel.removeRow(dataTable.convertRowIndexToModel(selectedRow));
                         } else {
                             throw new IllegalArgumentException("Пациент для удаления не выбран");
                         }
@@ -128,60 +145,128 @@ public class Listeners {
 
 
     /**
-     * Создает слушатель для поиска пациента по имени, врачу или болезни.
+     * Создает слушатель для поиска пациента по имени, врачу или болезни ("найти далее").
+     * Подходящие значения колонки находятся по триграммному индексу модели, после чего строки
+     * таблицы проверяются только по кодам. Повторное нажатие с тем же запросом переходит
+     * к следующей найденной строке (по кругу).
      *
      * @param dataTable   таблица, в которой производится поиск
+     * @param tableModel  модель таблицы
      * @param searchField поле ввода для текста поиска
      * @param searchType  комбобокс для выбора типа поиска (0 - имя пациента, 1 - имя врача, 2 - болезнь)
      * @param frame       окно, в котором отображаются сообщения
      * @return ActionListener для поиска пациента
      */
-    public static ActionListener getSearchListener(JTable dataTable, JTextField searchField,
-                                                   JComboBox<String> searchType, JFrame frame) {
+    public static ActionListener getSearchListener(JTable dataTable, PatientTableModel tableModel,
+                                                   JTextField searchField, JComboBox<String> searchType,
+                                                   JFrame frame) {
+        String[] lastSearch = {null}; // запрос и колонка предыдущего поиска
         return e -> {
             try {
-                String searchText = searchField.getText().toLowerCase();
-
-                // Определяем, по какой колонке будем искать:
-                int selectedIndex = searchType.getSelectedIndex(); // 0 - Имя пациента, 1 - Имя врача, 2 - Болезнь
-                int searchColumn;
-                switch (selectedIndex) {
-                    case 0:
-                        searchColumn = 0; // Имя пациента
-                        break;
-                    case 1:
-                        searchColumn = 2; // Имя врача
-                        break;
-                    case 2:
-                        searchColumn = 1; // Болезнь
-                        break;
-                    default:
-                        searchColumn = 0;
+                String searchText = searchField.getText();
+                int searchColumn = getSearchColumn(searchType);
+
+                // Тот же запрос — продолжаем со строки после выделенной, иначе начинаем сначала
+                String searchKey = searchColumn + ":" + searchText.toLowerCase();
+                int start = searchKey.equals(lastSearch[0]) ? dataTable.getSelectedRow() + 1 : 0;
+                lastSearch[0] = searchKey;
+
+                int i;
+                try (Metrics.Operation op = Metrics.begin("search.next").rows(dataTable.getRowCount())
+                        .detail(tableModel.getColumnName(searchColumn))) {
+                    BitSet codes = tableModel.findCodes(searchColumn, searchText);
+                    i = findNext(dataTable, tableModel, searchColumn, codes, start);
+                    op.succeeded();
                 }
+                if (i >= 0) {
+                    // 1) Выделяем нужную строку:
+                    dataTable.setRowSelectionInterval(i, i);
 
-                boolean found = false;
-                for (int i = 0; i < dataTable.getRowCount(); i++) {
-                    String value = dataTable.getValueAt(i, searchColumn).toString().toLowerCase();
-                    if (value.contains(searchText)) {
-                        // 1) Выделяем нужную строку:
-                        dataTable.setRowSelectionInterval(i, i);
+                    // 2) Прокручиваем таблицу, чтобы пользователь увидел выделение:
+                    dataTable.scrollRectToVisible(dataTable.getCellRect(i, searchColumn, true));
 
-                        // 2) Прокручиваем таблицу, чтобы пользователь увидел выделение:
-                        dataTable.scrollRectToVisible(dataTable.getCellRect(i, searchColumn, true));
+                    // 3) Также можно "сфокусировать" конкретную ячейку, чтобы появилась синяя рамка:
+                    dataTable.changeSelection(i, searchColumn, false, false);
 
-                        // 3) Также можно "сфокусировать" конкретную ячейку, чтобы появилась синяя рамка:
-                        dataTable.changeSelection(i, searchColumn, false, false);
+                    // 4) Передаём фокус таблице, чтобы она показала "активное" выделение:
+                    dataTable.requestFocusInWindow();
+                } else {
+                    throw new IllegalArgumentException("Ничего не найдено");
+                }
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(frame,
+                        "Ошибка поиска: " + ex.getMessage(),
+                        "error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        };
+    }
+
+    /**
+     * Ищет следующую строку таблицы (в порядке отображения, по кругу), значение которой
+     * в колонке входит в найденные по индексу коды.
+     * @param dataTable  таблица (учитываются сортировка и фильтр)
+     * @param tableModel модель таблицы
+     * @param column     колонка поиска
+     * @param codes      подходящие коды значений колонки ({@link PatientTableModel#findCodes})
+     * @param start      строка таблицы, с которой начинать
+     * @return номер строки таблицы или -1, если ничего не найдено
+     */
+    static int findNext(JTable dataTable, PatientTableModel tableModel, int column, BitSet codes, int start) {
+        int rowCount = dataTable.getRowCount();
+        for (int n = 0; n < rowCount && !codes.isEmpty(); n++) {
+            int i = (start + n) % rowCount;
+            if (codes.get(tableModel.getCode(dataTable.convertRowIndexToModel(i), column))) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-                        // 4) Передаём фокус таблице, чтобы она показала "активное" выделение:
-                        dataTable.requestFocusInWindow();
+    /**
+     * Создает слушатель "найти все": выделяет в таблице все строки, подходящие под запрос.
+     *
+     * @param dataTable   таблица, в которой производится поиск
+     * @param tableModel  модель таблицы
+     * @param searchField поле ввода для текста поиска
+     * @param searchType  комбобокс для выбора типа поиска
+     * @param frame       окно, в котором отображаются сообщения
+     * @return ActionListener для поиска всех подходящих пациентов
+     */
+    public static ActionListener getFindAllListener(JTable dataTable, PatientTableModel tableModel,
+                                                    JTextField searchField, JComboBox<String> searchType,
+                                                    JFrame frame) {
+        return e -> {
+            try {
+                int searchColumn = getSearchColumn(searchType);
+                BitSet rows;
+                try (Metrics.Operation op = Metrics.begin("search.all").rows(tableModel.getRowCount())
+                        .detail(tableModel.getColumnName(searchColumn))) {
+                    rows = tableModel.findRows(searchColumn, searchField.getText());
+                    op.succeeded();
+                }
+                if (rows.isEmpty()) {
+                    throw new IllegalArgumentException("Ничего не найдено");
+                }
 
-                        found = true;
-                        break;
+                ListSelectionModel selection = dataTable.getSelectionModel();
+                selection.setValueIsAdjusting(true); // одно событие выделения вместо тысяч
+                selection.clearSelection();
+                int firstView = Integer.MAX_VALUE;
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    int viewRow = dataTable.convertRowIndexToView(row);
+                    if (viewRow >= 0) { // строка может быть скрыта фильтром
+                        selection.addSelectionInterval(viewRow, viewRow);
+                        firstView = Math.min(firstView, viewRow);
                     }
                 }
-                if (!found) {
-                    throw new IllegalArgumentException("Ничего не найдено");
+                selection.setValueIsAdjusting(false);
+
+                if (firstView == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Найденные строки скрыты фильтром");
                 }
+                dataTable.scrollRectToVisible(dataTable.getCellRect(firstView, searchColumn, true));
+                dataTable.requestFocusInWindow();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(frame,
                         "Ошибка поиска: " + ex.getMessage(),
@@ -191,6 +276,22 @@ public class Listeners {
         };
     }
 
+    /**
+     * Вспомогательный метод: колонка таблицы для выбранного типа поиска
+     */
+    private static int getSearchColumn(JComboBox<String> searchType) {
+        // Определяем, по какой колонке будем искать:
+        int selectedIndex = searchType.getSelectedIndex(); // 0 - Имя пациента, 1 - Имя врача, 2 - Болезнь
+        switch (selectedIndex) {
+            case 1:
+                return PatientTableModel.DOCTOR; // Имя врача
+            case 2:
+                return PatientTableModel.DISEASE; // Болезнь
+            default:
+                return PatientTableModel.NAME; // Имя пациента
+        }
+    }
+
 
     /**
      * Создает слушатель для сортировки пациентов.
@@ -220,7 +321,7 @@ public class Listeners {
     public static ActionListener getSortTypeActionListener(
             JComboBox<String> sortType,
             JFrame frame,
-            TableRowSorter<DefaultTableModel> sorter
+            TableRowSorter<PatientTableModel> sorter
     ) {
         return e -> {
             String selectedSort = (String) sortType.getSelectedItem();
@@ -268,57 +369,197 @@ public class Listeners {
      *
      * @param tableModel ячейки таблицы
      * @param frame      окно, в котором отображаются сообщения
+     * @param status     метка состояния сохранения
      */
-    public static ActionListener getLoadDataListener(DefaultTableModel tableModel, JFrame frame) {
+    public static ActionListener getLoadDataListener(PatientTableModel tableModel, JFrame frame, JLabel status) {
         return e -> {
             JFileChooser fileChooser = new JFileChooser(); // Окно для выбора файла
             int result = fileChooser.showOpenDialog(frame); // Открытие диалогового окна для выбора файла
             if (result == JFileChooser.APPROVE_OPTION) {
-                GUI.openedFile = fileChooser.getSelectedFile(); // Получаем выбранный файл
-                XMLfile.loadFromXML(tableModel, GUI.openedFile); // Загружаем данные из файла с помощью XMLReader
-                JOptionPane.showMessageDialog(frame, "Данные успешно загружены!"); // Показываем сообщение об успехе
+                File file = fileChooser.getSelectedFile(); // Получаем выбранный файл
+                loadData(tableModel, file, frame, status, loaded ->
+                        JOptionPane.showMessageDialog(frame, "Данные успешно загружены!")); // Показываем сообщение об успехе
             }
         };
     }
 
     /**
-     * Создает слушатель для сохранения данных в формате "сохранить как"
+     * Создает слушатель для открытия архива (большого двоичного снимка) в отдельном окне только для чтения.
+     *
+     * @param frame окно, в котором отображаются сообщения
+     * @return ActionListener для открытия архива
+     */
+    public static ActionListener getOpenArchiveListener(JFrame frame) {
+        return e -> {
+            JFileChooser fileChooser = new JFileChooser(); // Окно для выбора файла
+            fileChooser.setFileFilter(new FileNameExtensionFilter(
+                    "Двоичный снимок (*.bin)", "bin"));
+            if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                ArchiveWindow.open(frame, fileChooser.getSelectedFile());
+            }
+        };
+    }
+
+    /**
+     * Создает слушатель для открытия окна статистики ({@link StatisticsWindow}).
+     *
+     * @param frame      главное окно (окно статистики открывается над ним)
+     * @param statistics сводка по таблице пациентов
+     * @return ActionListener для открытия статистики
+     */
+    public static ActionListener getOpenStatisticsListener(JFrame frame, PatientStatistics statistics) {
+        return e -> {
+            StatisticsWindow window = new StatisticsWindow(statistics);
+            window.setLocationRelativeTo(frame);
+            window.setVisible(true);
+        };
+    }
+
+    /**
+     * Создает слушатель для сохранения сводки метрик ({@link Metrics}) в выбранный файл.
+     *
+     * @param frame окно, в котором отображаются сообщения
+     * @return ActionListener для сохранения метрик
+     */
+    public static ActionListener getSaveMetricsListener(JFrame frame) {
+        return e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File("clinic-metrics.txt"));
+            if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                File file = fileChooser.getSelectedFile();
+                try {
+                    Metrics.dump(file);
+                    JOptionPane.showMessageDialog(frame, "Метрики сохранены: " + file.getPath());
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(frame,
+                            "Ошибка сохранения метрик: " + ex.getMessage(),
+                            "error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+    }
+
+    /**
+     * Загружает файл в таблицу в фоне: из двоичного снимка рядом с ним, если он записан вместе
+     * с файлом ({@link BinarySnapshot}), иначе из XML; при отмене или ошибке в таблице остаются прежние данные.
+     * Журнал изменений прежнего файла закрывается до начала загрузки (и продолжается, если
+     * загрузка не удалась). Если рядом с загруженным файлом есть журнал, он проигрывается
+     * поверх данных; при выключенном режиме журнала он затем сворачивается в XML и удаляется.
+     *
+     * @param tableModel модель таблицы
+     * @param file       файл XML
+     * @param frame      окно, в котором отображаются сообщения
+     * @param status     метка состояния сохранения
+     * @param onLoaded   вызывается после успешной загрузки, может быть {@code null}
+     */
+    public static void loadData(PatientTableModel tableModel, File file, JFrame frame, JLabel status,
+                                Consumer<File> onLoaded) {
+        ChangeJournal previous = GUI.changeJournal;
+        if (previous != null) {
+            previous.close(); // все записи на диске, модель пока не менялась
+            GUI.changeJournal = null;
+        }
+        Consumer<File> afterLoad = loaded -> {
+            GUI.openedFile = loaded;
+            if (GUI.journalMode || ChangeJournal.journalFile(loaded).exists()) {
+                ChangeJournal journal = ChangeJournal.open(tableModel, loaded, status::setText);
+                if (GUI.journalMode) {
+                    GUI.changeJournal = journal;
+                } else {
+                    journal.closeAndFold();
+                }
+            }
+            status.setText("SAVED");
+            if (onLoaded != null) {
+                onLoaded.accept(loaded);
+            }
+        };
+
+        Runnable onFailed = () -> {
+            if (previous != null) {
+                // Модель снова содержит прежние данные вместе со всеми записями журнала
+                GUI.changeJournal = ChangeJournal.reattach(tableModel, previous.getXmlFile(), status::setText);
+            }
+        };
+        // Двоичный снимок, записанный вместе с XML, открывается без разбора XML
+        if (BinarySnapshot.isUsable(file)) {
+            new SnapshotLoadTask(tableModel, file, frame, afterLoad, onFailed).start();
+        } else {
+            new XmlLoadTask(tableModel, file, frame, afterLoad, onFailed).start();
+        }
+    }
+
+    /**
+     * Создает слушатель для включения и выключения журнала изменений.
+     * При включении текущие данные записываются в XML как контрольная точка нового журнала,
+     * при выключении журнал сворачивается в XML и удаляется.
+     *
+     * @param tableModel  модель таблицы
+     * @param journalItem пункт меню с флажком
+     * @param status      метка состояния сохранения
+     * @return ActionListener для переключения режима журнала
+     */
+    public static ActionListener getJournalModeListener(PatientTableModel tableModel, AbstractButton journalItem,
+                                                        JLabel status) {
+        return e -> {
+            GUI.journalMode = journalItem.isSelected();
+            if (GUI.journalMode) {
+                if (GUI.changeJournal == null && GUI.openedFile != null && GUI.openedFile.exists()) {
+                    GUI.changeJournal = ChangeJournal.reattach(tableModel, GUI.openedFile, status::setText);
+                }
+            } else if (GUI.changeJournal != null) {
+                GUI.changeJournal.closeAndFold();
+                GUI.changeJournal = null;
+            }
+        };
+    }
+
+    /**
+     * Создает слушатель для сохранения данных в формате "сохранить как".
+     * Запись идёт в фоне ({@link IoService}), метка состояния показывает SAVING, затем SAVED или FAILED.
      *
      * @param tableModel ячейки таблицы
      * @param frame      окно, в котором отображаются сообщения
      */
-    public static ActionListener getSaveToPathDataListener(JFrame frame, DefaultTableModel tableModel, JLabel status) {
+    public static ActionListener getSaveToPathDataListener(JFrame frame, PatientTableModel tableModel, JLabel status) {
         return e -> {
             JFileChooser fileChooser = new JFileChooser(); // Окно для выбора пути сохранения
             int result = fileChooser.showSaveDialog(frame); // Открытие диалогового окна для сохранения файла
             if (result == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile(); // Получаем выбранный файл
-                XMLfile.saveToXML(tableModel, file); // Сохраняем данные в файл с помощью XMLWriter
-                status.setText("SAVED");
-                JOptionPane.showMessageDialog(frame, "Данные успешно сохранены!"); // Показываем сообщение об успехе
+                PatientSnapshot snapshot = tableModel.snapshot();
+                ChangeJournal journal = GUI.changeJournal;
+                if (journal != null && journal.getXmlFile().getAbsoluteFile().equals(file.getAbsoluteFile())) {
+                    // Тот же файл, что и у журнала: пишем с его отметкой, иначе журнал устареет
+                    long seq = journal.getLastSeq();
+                    saveInBackground(frame, status, file, () -> journal.checkpoint(snapshot, seq));
+                } else {
+                    saveInBackground(frame, status, file, () -> XMLfile.writeXMLWithSnapshot(snapshot, file, null));
+                }
             }
         };
     }
 
 
     /**
-     * Создает слушатель для сохранения данных в тот же файл
+     * Создает слушатель для сохранения данных в тот же файл.
+     * Запись идёт в фоне ({@link IoService}), метка состояния показывает SAVING, затем SAVED или FAILED.
      *
      * @param tableModel ячейки таблицы
      * @param frame      окно, в котором отображаются сообщения
      */
-    public static ActionListener getSaveDataListener(JFrame frame, DefaultTableModel tableModel, JLabel status) {
+    public static ActionListener getSaveDataListener(JFrame frame, PatientTableModel tableModel, JLabel status) {
         return e -> {
-            if (GUI.openedFile != null) {
-                try {
-                    // Используем класс XMLfile для сохранения данных
-                    XMLfile.saveToXML(tableModel, GUI.openedFile);
-                    status.setText("SAVED");
-                    JOptionPane.showMessageDialog(frame, "Данные успешно сохранены в файл: " + GUI.openedFile.getName());
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(frame, "Ошибка сохранения файла: " + ex.getMessage(),
-                            "Ошибка", JOptionPane.ERROR_MESSAGE);
-                }
+            ChangeJournal journal = GUI.changeJournal;
+            File file = GUI.openedFile;
+            if (journal != null) {
+                // В режиме журнала изменения уже записаны в него, остаётся сбросить их на диск
+                saveInBackground(frame, status, ChangeJournal.journalFile(journal.getXmlFile()), journal::sync);
+            } else if (file != null) {
+                PatientSnapshot snapshot = tableModel.snapshot();
+                saveInBackground(frame, status, file, () -> XMLfile.writeXMLWithSnapshot(snapshot, file, null));
             } else {
                 JOptionPane.showMessageDialog(frame, "Файл для сохранения не загружен!",
                         "Ошибка", JOptionPane.ERROR_MESSAGE);
@@ -326,64 +567,102 @@ public class Listeners {
         };
     }
 
+    // Сохранения, отданные IoService и ещё не завершённые (только в EDT)
+    private static int savesInProgress;
+
     /**
-     * Создает слушатель для экспорта отчета в PDF.
+     * Отдаёт сохранение в фон. Метка показывает SAVING; когда все начатые сохранения закончились —
+     * SAVED (если за это время таблицу не меняли, иначе остаётся UNSAVED), при ошибке — FAILED.
+     */
+    private static void saveInBackground(JFrame frame, JLabel status, File file, IoService.Task task) {
+        savesInProgress++;
+        status.setText("SAVING");
+        IoService.getInstance().save(file, task, failure -> {
+            savesInProgress--;
+            if (failure != null) {
+                status.setText("FAILED");
+                JOptionPane.showMessageDialog(frame, "Ошибка сохранения файла " + file.getName() + ": "
+                        + failure.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            } else if (savesInProgress == 0 && "SAVING".equals(status.getText())) {
+                status.setText("SAVED");
+            }
+        });
+    }
+
+    /**
+     * Создает слушатель для экспорта отчета в PDF. Отчёт строится в фоне ({@link IoService})
+     * по снимку таблицы на момент нажатия.
      *
      * @param frame          окно, в котором отображаются сообщения
+     * @param tableModel     модель таблицы, по данным которой строится отчет
      * @param reportPath     путь к файлу шаблона отчёта
      * @param outputFilePath путь, куда сохраняется сгенерированный отчет
      * @return ActionListener для экспорта отчета
      */
-    public static ActionListener getExportPdfReportListener(JFrame frame, String reportPath, String outputFilePath) {
+    public static ActionListener getExportPdfReportListener(JFrame frame, PatientTableModel tableModel,
+                                                          String reportPath, String outputFilePath) {
         return e -> {
-            try {
-                String xmlFilePath = GUI.openedFile != null ? GUI.openedFile.getAbsolutePath() : null;
-
-                if (xmlFilePath == null) {
-                    JOptionPane.showMessageDialog(frame, "Сначала загрузите XML файл!", "Ошибка", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-
-                // Генерация PDF отчета
-                ReportGenerator generator = new ReportGenerator();
-                generator.generatePdfReport(reportPath, xmlFilePath, outputFilePath);
-
-                JOptionPane.showMessageDialog(frame, "PDF отчет успешно создан:\n" + outputFilePath, "Успех", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "Ошибка генерации PDF отчета:\n" + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
-            }
+            // Генерация PDF отчета прямо по данным таблицы, без промежуточного сохранения в XML
+            PatientSnapshot snapshot = tableModel.snapshot();
+            exportInBackground(frame, "PDF отчет успешно создан", "Ошибка генерации PDF отчета", outputFilePath,
+                    () -> new ReportGenerator().generatePdfReport(reportPath, snapshot, outputFilePath));
         };
     }
 
     /**
-     * Создает слушатель для экспорта отчета в HTML.
+     * Создает слушатель для экспорта отчета в HTML. Отчёт строится в фоне ({@link IoService})
+     * по снимку таблицы на момент нажатия.
      *
      * @param frame          окно, в котором отображаются сообщения
+     * @param tableModel     модель таблицы, по данным которой строится отчет
      * @param reportPath     путь к файлу шаблона отчёта
      * @param outputFilePath путь, куда сохраняется сгенерированный отчет
      * @return ActionListener для экспорта отчета
      */
-    public static ActionListener getExportHtmlReportListener(JFrame frame, String reportPath, String outputFilePath) {
+    public static ActionListener getExportHtmlReportListener(JFrame frame, PatientTableModel tableModel,
+                                                           String reportPath, String outputFilePath) {
         return e -> {
-            try {
-                String xmlFilePath = GUI.openedFile != null ? GUI.openedFile.getAbsolutePath() : null;
-
-                if (xmlFilePath == null) {
-                    JOptionPane.showMessageDialog(frame, "Сначала загрузите XML файл!", "Ошибка", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-
-                // Генерация HTML отчета
-                ReportGenerator generator = new ReportGenerator();
-                generator.generateHtmlReport(reportPath, xmlFilePath, outputFilePath);
+            // Генерация HTML отчета прямо по данным таблицы, без промежуточного сохранения в XML
+            PatientSnapshot snapshot = tableModel.snapshot();
+            exportInBackground(frame, "HTML отчет успешно создан", "Ошибка генерации HTML отчета", outputFilePath,
+                    () -> new ReportGenerator().generateHtmlReport(reportPath, snapshot, outputFilePath));
+        };
+    }
 
-                JOptionPane.showMessageDialog(frame, "HTML отчет успешно создан:\n" + outputFilePath, "Успех", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "Ошибка генерации HTML отчета:\n" + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
+    /**
+     * Создает слушатель для быстрой выгрузки таблицы в CSV или HTML без JasperReports
+     * ({@link TableExport}): строки в текущем порядке сортировки, только прошедшие фильтр.
+     * Файл пишется в фоне ({@link IoService}).
+     *
+     * @param frame      окно, в котором отображаются сообщения
+     * @param dataTable  таблица (её сортировка и фильтр)
+     * @param tableModel модель таблицы
+     * @param format     формат выгрузки
+     * @return ActionListener для выгрузки таблицы
+     */
+    public static ActionListener getExportTableListener(JFrame frame, JTable dataTable, PatientTableModel tableModel,
+                                                        TableExport.Format format) {
+        return e -> {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setSelectedFile(new File("patients." + format.getExtension()));
+            if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                File file = fileChooser.getSelectedFile();
+                TableExport export = TableExport.of(dataTable, tableModel);
+                exportInBackground(frame, "Таблица выгружена в " + format, "Ошибка выгрузки таблицы в " + format,
+                        file.getPath(), () -> export.write(format, file));
             }
         };
     }
+
+    private static void exportInBackground(JFrame frame, String doneMessage, String errorMessage, String outputFilePath,
+                                           IoService.Task task) {
+        IoService.getInstance().export(new File(outputFilePath), task, failure -> {
+            if (failure == null) {
+                JOptionPane.showMessageDialog(frame, doneMessage + ":\n" + outputFilePath, "Успех", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(frame, errorMessage + ":\n" + failure.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
 }
 
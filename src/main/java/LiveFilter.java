@@ -0,0 +1,295 @@
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JTextField;
+import javax.swing.RowFilter;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Фильтрация таблицы по мере ввода текста в поле поиска.
+ * <p>
+ * Нажатия клавиш собираются с задержкой (debounce), после чего набор подходящих строк
+ * вычисляется в фоновом потоке по копии колонки кодов и применяется к сортировщику как готовый
+ * {@link RowFilter}, который только проверяет бит в {@link BitSet}. Поток Swing (EDT) строки
+ * не сравнивает: в нём лишь находятся подходящие значения словаря через триграммный индекс.
+ * Если новый запрос продолжает предыдущий (содержит его), проверяются только строки,
+ * прошедшие предыдущий фильтр.
+ * <p>
+ * Пока фильтр активен, добавление, удаление и правка отдельных строк учитываются сразу
+ * (сдвигом битов и проверкой только затронутых строк), а полная перезагрузка модели
+ * приводит к новому фоновому вычислению.
+ */
+public class LiveFilter {
+
+    /** Задержка после последнего нажатия клавиши, мс. */
+    private static final int DEBOUNCE_MS = 250;
+
+    private final PatientTableModel tableModel;
+    private final PatientRowSorter sorter;
+    private final JTextField searchField;
+    private final JComboBox<String> searchType;
+    private final JCheckBox enabledBox;
+    private final String placeholder;
+    private final Timer debounceTimer;
+
+    private long modelVersion;      // увеличивается при каждом изменении модели
+    private int generation;         // номер последнего запущенного вычисления
+    private SwingWorker<BitSet, Void> worker;
+
+    // Применённый фильтр (актуален для текущего содержимого модели)
+    private String appliedQuery;
+    private int appliedColumn = -1;
+    private BitSet appliedCodes;
+    private int appliedCodeLimit;   // размер словаря на момент поиска: коды от него и выше не проверялись
+    private BitSet appliedRows;
+    private boolean narrowable;     // можно ли уточнять применённый фильтр (после перезагрузки — нет)
+
+    /**
+     * @param tableModel  модель таблицы
+     * @param sorter      сортировщик таблицы, которому назначается фильтр
+     * @param searchField поле ввода текста поиска
+     * @param searchType  комбобокс для выбора колонки поиска
+     * @param enabledBox  флажок, включающий фильтрацию по мере ввода
+     * @param placeholder текст-заполнитель поля поиска (он фильтром не считается)
+     */
+    public LiveFilter(PatientTableModel tableModel, PatientRowSorter sorter, JTextField searchField,
+                      JComboBox<String> searchType, JCheckBox enabledBox, String placeholder) {
+        this.tableModel = tableModel;
+        this.sorter = sorter;
+        this.searchField = searchField;
+        this.searchType = searchType;
+        this.enabledBox = enabledBox;
+        this.placeholder = placeholder;
+
+        debounceTimer = new Timer(DEBOUNCE_MS, e -> refilter());
+        debounceTimer.setRepeats(false);
+
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                schedule();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                schedule();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                schedule();
+            }
+        });
+        searchType.addActionListener(e -> schedule());
+        enabledBox.addActionListener(e -> {
+            if (enabledBox.isSelected()) {
+                refilter();
+            } else {
+                clearFilter();
+            }
+        });
+        tableModel.addTableModelListener(this::modelChanged);
+    }
+
+    private void schedule() {
+        if (enabledBox.isSelected()) {
+            debounceTimer.restart();
+        }
+    }
+
+    /**
+     * Запускает вычисление фильтра для текущего текста поиска.
+     */
+    private void refilter() {
+        if (!enabledBox.isSelected()) {
+            return;
+        }
+        String query = searchField.getText();
+        if (query.isEmpty() || query.equals(placeholder)) {
+            clearFilter();
+            return;
+        }
+        int column = getSearchColumn();
+        String lowerQuery = query.toLowerCase();
+
+        // Подходящие значения словаря — по индексу, это быстро и на EDT
+        BitSet codes = tableModel.findCodes(column, query);
+        int codeLimit = tableModel.getDictionarySize(column);
+
+        // Новый запрос уточняет применённый — достаточно проверить уже отфильтрованные строки
+        BitSet candidates = null;
+        if (narrowable && column == appliedColumn && lowerQuery.contains(appliedQuery)) {
+            candidates = (BitSet) appliedRows.clone();
+        }
+
+        int[] columnCodes = tableModel.copyCodes(column);
+        long version = modelVersion;
+        int myGeneration = ++generation;
+        if (worker != null) {
+            worker.cancel(false);
+        }
+        BitSet start = candidates;
+        String columnName = tableModel.getColumnName(column);
+        worker = new SwingWorker<BitSet, Void>() {
+            @Override
+            protected BitSet doInBackground() {
+                try (Metrics.Operation op = Metrics.begin("search.filter")
+                        .rows(start != null ? start.cardinality() : columnCodes.length)
+                        .detail(columnName)) {
+                    BitSet rows = matchRows(columnCodes, codes, start);
+                    op.succeeded();
+                    return rows;
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || myGeneration != generation) {
+                    return; // результат уже никому не нужен
+                }
+                if (version != modelVersion) {
+                    refilter(); // модель поменялась, пока считали
+                    return;
+                }
+                try {
+                    apply(lowerQuery, column, codes, codeLimit, get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    // Выполняется в фоновом потоке: проверка строк только по кодам
+    private static BitSet matchRows(int[] columnCodes, BitSet codes, BitSet candidates) {
+        BitSet rows = new BitSet(columnCodes.length);
+        if (codes.isEmpty()) {
+            return rows;
+        }
+        if (candidates != null) {
+            for (int row = candidates.nextSetBit(0); row >= 0; row = candidates.nextSetBit(row + 1)) {
+                if (codes.get(columnCodes[row])) {
+                    rows.set(row);
+                }
+            }
+        } else {
+            for (int row = 0; row < columnCodes.length; row++) {
+                if (codes.get(columnCodes[row])) {
+                    rows.set(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void apply(String query, int column, BitSet codes, int codeLimit, BitSet rows) {
+        appliedQuery = query;
+        appliedColumn = column;
+        appliedCodes = codes;
+        appliedCodeLimit = codeLimit;
+        appliedRows = rows;
+        narrowable = true;
+        sorter.setRowFilter(new RowFilter<PatientTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends PatientTableModel, ? extends Integer> entry) {
+                return rows.get(entry.getIdentifier());
+            }
+        });
+    }
+
+    private void clearFilter() {
+        debounceTimer.stop();
+        generation++;
+        if (worker != null) {
+            worker.cancel(false);
+            worker = null;
+        }
+        appliedQuery = null;
+        appliedColumn = -1;
+        appliedCodes = null;
+        appliedRows = null;
+        narrowable = false;
+        sorter.setRowFilter(null);
+    }
+
+    /**
+     * Поддерживает набор строк фильтра в актуальном состоянии при изменениях модели.
+     * Вызывается раньше, чем изменения обработает сортировщик (слушатели модели оповещаются
+     * в обратном порядке регистрации, а таблица с сортировщиком зарегистрирована раньше).
+     */
+    private void modelChanged(TableModelEvent e) {
+        modelVersion++;
+        if (appliedRows == null) {
+            return;
+        }
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            // Перезагрузка всей модели: старые номера строк ничего не значат
+            appliedRows.clear(); // пока считаем заново, таблица пуста
+            narrowable = false;
+            refilter();
+            return;
+        }
+        int count = last - first + 1;
+        switch (e.getType()) {
+            case TableModelEvent.INSERT:
+                shift(appliedRows, first, count);
+                recheck(first, last);
+                break;
+            case TableModelEvent.DELETE:
+                shift(appliedRows, first, -count);
+                break;
+            default:
+                recheck(first, last);
+                break;
+        }
+    }
+
+    // Проверяет отдельные строки по кодам уже найденных значений
+    private void recheck(int first, int last) {
+        for (int row = first; row <= last; row++) {
+            int code = tableModel.getCode(row, appliedColumn);
+            // Значение, появившееся в словаре после поиска, проверяем отдельно
+            boolean matches = code < appliedCodeLimit
+                    ? appliedCodes.get(code)
+                    : tableModel.getValueAt(row, appliedColumn).toLowerCase().contains(appliedQuery);
+            appliedRows.set(row, matches);
+        }
+    }
+
+    // Сдвигает биты начиная с from на delta позиций (вставка > 0, удаление < 0)
+    private static void shift(BitSet bits, int from, int delta) {
+        int length = bits.length();
+        int tailStart = delta > 0 ? from : from - delta;
+        if (tailStart >= length) {
+            if (from < length) {
+                bits.clear(from, length);
+            }
+            return;
+        }
+        BitSet tail = bits.get(tailStart, length);
+        bits.clear(from, length);
+        int target = delta > 0 ? from + delta : from;
+        for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+            bits.set(target + i);
+        }
+    }
+
+    private int getSearchColumn() {
+        switch (searchType.getSelectedIndex()) {
+            case 1:
+                return PatientTableModel.DOCTOR;
+            case 2:
+                return PatientTableModel.DISEASE;
+            default:
+                return PatientTableModel.NAME;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Нагрузочный прогон без окна: те же действия, что выполняют обработчики {@link Listeners}
+ * (добавление, удаление, поиск, сортировка, сохранение, экспорт отчёта), над таблицей
+ * из сгенерированных данных ({@link DatasetGenerator}), с перцентилями задержек по каждому действию.
+ * <p>
+ * Действия выполняются в потоке событий, как в приложении, над {@code JTable} с
+ * {@link PatientRowSorter}; вместо диалогов значения берутся из генератора. Запускается
+ * с {@code -Djava.awt.headless=true} (включается и сам, если свойство не задано):
+ * <pre>
+ * java -Djava.awt.headless=true -cp ... LoadTestHarness --rows 100000 --ops add=1000,search=500,save=5
+ * </pre>
+ */
+public class LoadTestHarness {
+
+    private static final String[] OPERATIONS = {"add", "delete", "search", "sort", "save", "export"};
+    private static final int[] DEFAULT_COUNTS = {500, 500, 500, 50, 10, 2};
+    private static final int[] SEARCH_COLUMNS = {PatientTableModel.NAME, PatientTableModel.DOCTOR, PatientTableModel.DISEASE};
+
+    private final PatientTableModel tableModel = new PatientTableModel();
+    private final JTable dataTable = new JTable(tableModel);
+    private final PatientRowSorter sorter = new PatientRowSorter(tableModel);
+    private final DatasetGenerator generator;
+    private final Random random;
+    private final File dataFile;
+    private final File reportDir;
+    private final Map<String, List<Long>> latencies = new LinkedHashMap<>();
+    private int sortCount;
+    private int exportCount;
+
+    private LoadTestHarness(DatasetGenerator generator, long seed, File dataFile, File reportDir) {
+        this.generator = generator;
+        this.random = new Random(seed);
+        this.dataFile = dataFile;
+        this.reportDir = reportDir;
+        dataTable.setRowSorter(sorter);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true"); // до первого обращения к AWT
+        }
+        int rows = 10_000;
+        long seed = 1;
+        String ops = null;
+        File reportDir = new File("src/docs");
+        boolean keep = false;
+        List<String[]> generatorOptions = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--keep".equals(option)) {
+                keep = true;
+                continue;
+            }
+            if (!option.startsWith("--") || i + 1 >= args.length) {
+                printUsage();
+                return;
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--rows":
+                    rows = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--ops":
+                    ops = value;
+                    break;
+                case "--reports":
+                    reportDir = new File(value);
+                    break;
+                default:
+                    generatorOptions.add(new String[]{option.substring(2), value});
+            }
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(seed);
+        for (String[] option : generatorOptions) {
+            if (!generator.setOption(option[0], option[1])) {
+                throw new IllegalArgumentException("Неизвестный параметр: --" + option[0]);
+            }
+        }
+        int[] counts = parseCounts(ops);
+
+        File dir = Files.createTempDirectory("clinic-load").toFile();
+        File dataFile = new File(dir, "patients.xml");
+        LoadTestHarness harness = new LoadTestHarness(generator, seed, dataFile, reportDir);
+        try {
+            harness.run(rows, counts);
+            harness.printReport();
+        } finally {
+            if (keep) {
+                System.out.println("Файлы прогона: " + dir);
+            } else {
+                for (File file : dir.listFiles()) {
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Использование: LoadTestHarness [--rows N] [--ops add=N,delete=N,search=N,sort=N,save=N,export=N]\n"
+                + "                       [--seed N] [--reports каталог шаблонов] [--keep] [параметры генератора]\n"
+                + DatasetGenerator.OPTIONS_HELP);
+    }
+
+    private static int[] parseCounts(String ops) {
+        int[] counts = DEFAULT_COUNTS.clone();
+        if (ops == null) {
+            return counts;
+        }
+        Arrays.fill(counts, 0); // заданы явно — остальные действия не выполняются
+        for (String part : ops.split(",")) {
+            String[] pair = part.trim().split("=");
+            int index = Arrays.asList(OPERATIONS).indexOf(pair[0]);
+            if (index < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Неизвестное действие: " + part + " (допустимы "
+                        + String.join(", ", OPERATIONS) + ")");
+            }
+            counts[index] = Integer.parseInt(pair[1]);
+        }
+        return counts;
+    }
+
+    private void run(int rows, int[] counts) throws Exception {
+        long start = System.nanoTime();
+        generator.writeXML(dataFile, rows);
+        record("generate", System.nanoTime() - start);
+
+        onEdt(() -> {
+            long loadStart = System.nanoTime();
+            XMLfile.loadFromXML(tableModel, dataFile); // то же чтение, что и у XmlLoadTask
+            record("load", System.nanoTime() - loadStart);
+        });
+        if (tableModel.getRowCount() != rows) {
+            throw new IllegalStateException("Загружено строк: " + tableModel.getRowCount() + " из " + rows);
+        }
+
+        // Действия в случайном порядке, каждое — отдельным событием в потоке событий
+        List<String> plan = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            plan.addAll(Collections.nCopies(counts[i], OPERATIONS[i]));
+        }
+        Collections.shuffle(plan, random);
+        System.out.println("Строк: " + rows + ", действий: " + plan.size());
+        for (String operation : plan) {
+            onEdt(() -> {
+                long operationStart = System.nanoTime();
+                perform(operation);
+                record(operation, System.nanoTime() - operationStart);
+            });
+        }
+    }
+
+    private void perform(String operation) throws Exception {
+        switch (operation) {
+            case "add": {
+                String[] patient = generator.nextRow();
+                Listeners.validatePatient(patient);
+                tableModel.addRow(patient);
+                break;
+            }
+            case "delete": {
+                if (dataTable.getRowCount() == 0) {
+                    return;
+                }
+                int viewRow = random.nextInt(dataTable.getRowCount());
+                dataTable.setRowSelectionInterval(viewRow, viewRow);
+                tableModel.removeRow(dataTable.convertRowIndexToModel(dataTable.getSelectedRow()));
+                break;
+            }
+            case "search": {
+                int column = SEARCH_COLUMNS[random.nextInt(SEARCH_COLUMNS.length)];
+                BitSet codes = tableModel.findCodes(column, randomQuery(column));
+                int viewRow = Listeners.findNext(dataTable, tableModel, column, codes, 0);
+                if (viewRow >= 0) {
+                    dataTable.setRowSelectionInterval(viewRow, viewRow);
+                }
+                break;
+            }
+            case "sort": {
+                // как getSortTypeActionListener: по имени и по дате поочерёдно
+                int column = sortCount++ % 2 == 0 ? PatientTableModel.NAME : PatientTableModel.DATE;
+                sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(column, SortOrder.ASCENDING)));
+                break;
+            }
+            case "save":
+                XMLfile.saveToXML(tableModel, dataFile);
+                break;
+            case "export": {
+                boolean pdf = exportCount++ % 2 == 0;
+                File template = new File(reportDir, pdf ? "ClinicPDF.jrxml" : "ClinicHTML.jrxml");
+                if (!template.isFile()) {
+                    throw new IOException("Нет шаблона отчёта: " + template + " (задаётся через --reports)");
+                }
+                File output = new File(dataFile.getParentFile(), pdf ? "report.pdf" : "report.html");
+                ReportGenerator reportGenerator = new ReportGenerator();
+                if (pdf) {
+                    reportGenerator.generatePdfReport(template.getPath(), PatientSnapshot.of(tableModel), output.getPath());
+                } else {
+                    reportGenerator.generateHtmlReport(template.getPath(), PatientSnapshot.of(tableModel), output.getPath());
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException(operation);
+        }
+    }
+
+    // Запрос поиска: кусок значения случайной строки, как если бы пользователь его набрал
+    private String randomQuery(int column) {
+        if (tableModel.getRowCount() == 0) {
+            return "a";
+        }
+        String value = tableModel.getValueAt(random.nextInt(tableModel.getRowCount()), column);
+        int length = Math.min(value.length(), 3 + random.nextInt(4));
+        int from = random.nextInt(value.length() - length + 1);
+        return value.substring(from, from + length);
+    }
+
+    private void record(String operation, long nanos) {
+        latencies.computeIfAbsent(operation, k -> new ArrayList<>()).add(nanos);
+    }
+
+    private void printReport() {
+        System.out.printf("%-10s %8s %10s %10s %10s %10s %12s%n", "действие", "раз", "p50, мс", "p90, мс",
+                "p99, мс", "max, мс", "всего, мс");
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            long total = Arrays.stream(sorted).sum();
+            System.out.printf("%-10s %8d %10.3f %10.3f %10.3f %10.3f %12.1f%n", entry.getKey(), sorted.length,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6, total / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+
+    private interface EdtTask {
+        void run() throws Exception;
+    }
+
+    // Выполняет действие в потоке событий и дожидается его; ошибка действия прерывает прогон
+    private static void onEdt(EdtTask task) throws Exception {
+        Exception[] failure = {null};
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                task.run();
+            } catch (Exception ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
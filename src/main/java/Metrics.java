@@ -0,0 +1,276 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики приложения в памяти процесса: счётчики, таймеры и гистограммы по именам.
+ * <p>
+ * Пользовательские операции оборачиваются в {@link #begin(String)}: время операции попадает
+ * в таймер с тем же именем, число строк и размер файла — в гистограммы {@code <имя>.rows}
+ * и {@code <имя>.bytes}, а в JDK Flight Recorder пишется событие {@link OperationEvent}
+ * (если запись включена, например {@code -XX:StartFlightRecording=filename=clinic.jfr}).
+ * <pre>
+ * try (Metrics.Operation op = Metrics.begin("xml.save").file(file).rows(n)) {
+ *     ...
+ *     op.succeeded();
+ * }
+ * </pre>
+ * Операция, не отмеченная успешной (исключение, отмена), считается неудачной.
+ * Сводку можно сохранить в файл ({@link #dump(File)}; в окне — пункт меню «Сохранить метрики»),
+ * а с {@code -Dclinic.metrics=<файл>} она записывается при выходе из программы.
+ * Все методы потокобезопасны.
+ */
+public final class Metrics {
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    static {
+        String exitFile = System.getProperty("clinic.metrics");
+        if (exitFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    dump(new File(exitFile));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }, "metrics-dump"));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Увеличивает счётчик на единицу.
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Увеличивает счётчик на {@code delta}.
+     */
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Добавляет значение в гистограмму (например, число строк или размер файла).
+     */
+    public static void record(String name, long value) {
+        HISTOGRAMS.computeIfAbsent(name, key -> new Histogram()).record(value);
+    }
+
+    /**
+     * Начинает операцию: время до {@link Operation#close()} попадёт в таймер {@code name}.
+     * @param name имя операции, например {@code xml.load} или {@code report.fill}
+     */
+    public static Operation begin(String name) {
+        return new Operation(name);
+    }
+
+    /**
+     * Текстовая сводка всех метрик (таймеры в миллисекундах).
+     */
+    public static String report() {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        out.println("# Метрики клиники, " + LocalDateTime.now().withNano(0));
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(TIMERS).entrySet()) {
+            Timer timer = entry.getValue();
+            out.printf("timer %s count=%d failures=%d total_ms=%.1f mean_ms=%.3f p50_ms=%.3f p90_ms=%.3f p99_ms=%.3f max_ms=%.3f%n",
+                    entry.getKey(), timer.nanos.count(), timer.failures.sum(), timer.nanos.sum() / 1e6,
+                    timer.nanos.mean() / 1e6, timer.nanos.percentile(0.50) / 1e6, timer.nanos.percentile(0.90) / 1e6,
+                    timer.nanos.percentile(0.99) / 1e6, timer.nanos.max() / 1e6);
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            Histogram histogram = entry.getValue();
+            out.printf("histogram %s count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d%n",
+                    entry.getKey(), histogram.count(), histogram.mean(), histogram.percentile(0.50),
+                    histogram.percentile(0.90), histogram.percentile(0.99), histogram.max());
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(COUNTERS).entrySet()) {
+            out.printf("counter %s %d%n", entry.getKey(), entry.getValue().sum());
+        }
+        out.flush();
+        return text.toString();
+    }
+
+    /**
+     * Записывает сводку ({@link #report()}) в файл.
+     * @param file файл сводки (перезаписывается)
+     * @throws IOException при ошибке записи
+     */
+    public static void dump(File file) throws IOException {
+        Files.write(file.toPath(), report().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Идущая операция (см. {@link Metrics#begin(String)}). Используется из одного потока.
+     */
+    public static final class Operation implements AutoCloseable {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final OperationEvent event = new OperationEvent();
+        private int rows = -1;
+        private long bytes = -1;
+        private boolean success;
+        private boolean closed;
+
+        private Operation(String name) {
+            this.name = name;
+            event.operation = name;
+            event.begin();
+        }
+
+        /** Число строк, которых касается операция. */
+        public Operation rows(int rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        /** Размер файла операции в байтах. */
+        public Operation bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        /** Файл операции (имя попадёт в событие JFR, размер — если файл уже есть). */
+        public Operation file(File file) {
+            event.file = file.getPath();
+            if (file.isFile()) {
+                bytes = file.length();
+            }
+            return this;
+        }
+
+        /** Подробности для события JFR (колонка, формат, режим и т.п.). */
+        public Operation detail(String detail) {
+            event.detail = detail;
+            return this;
+        }
+
+        /** Отмечает операцию успешной. */
+        public void succeeded() {
+            success = true;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long nanos = System.nanoTime() - startNanos;
+            Timer timer = TIMERS.computeIfAbsent(name, key -> new Timer());
+            timer.nanos.record(nanos);
+            if (!success) {
+                timer.failures.increment();
+            }
+            if (rows >= 0) {
+                record(name + ".rows", rows);
+            }
+            if (bytes >= 0) {
+                record(name + ".bytes", bytes);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.rows = rows;
+                event.bytes = bytes;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    private static final class Timer {
+        final Histogram nanos = new Histogram();
+        final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * Гистограмма неотрицательных значений с логарифмическими корзинами: четыре корзины
+     * на каждую степень двойки, так что перцентили получаются с точностью около 12%
+     * при постоянном объёме памяти.
+     */
+    private static final class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long sum() {
+            return sum.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count();
+            return n == 0 ? 0 : (double) sum() / n;
+        }
+
+        // Середина корзины, в которую попал перцентиль (но не больше максимума)
+        long percentile(double p) {
+            long n = count();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(max(), (lowerBound(i) + lowerBound(i + 1)) / 2);
+                }
+            }
+            return max();
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int highBit = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (highBit - 2)) & (SUB_BUCKETS - 1);
+            return (highBit - 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int highBit = bucket / SUB_BUCKETS + 1;
+            long sub = bucket % SUB_BUCKETS;
+            return (SUB_BUCKETS | sub) << (highBit - 2);
+        }
+    }
+}
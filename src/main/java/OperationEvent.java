@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JDK Flight Recorder для одной пользовательской операции (загрузка, сохранение,
+ * отчёт, поиск, сортировка, этап конвейера). Создаётся и записывается через {@link Metrics#begin};
+ * в записи JFR видно как {@code clinic.Operation} в категории «Clinic».
+ */
+@Name("clinic.Operation")
+@Label("Операция")
+@Category("Clinic")
+@Description("Пользовательская операция приложения клиники")
+@StackTrace(false)
+class OperationEvent extends jdk.jfr.Event {
+
+    @Label("Операция")
+    String operation;
+
+    @Label("Подробности")
+    String detail;
+
+    @Label("Строк")
+    int rows;
+
+    @Label("Размер файла")
+    @DataAmount
+    long bytes;
+
+    @Label("Файл")
+    String file;
+
+    @Label("Успешно")
+    boolean success;
+}
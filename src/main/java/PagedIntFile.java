@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Массив int в файле (big-endian), читаемый страницами по требованию.
+ * <p>
+ * В памяти держится не больше {@code maxPages} последних использованных страниц (LRU),
+ * поэтому объём кучи не зависит от размера файла. Не потокобезопасен: используется
+ * из одного потока (обычно EDT).
+ */
+public class PagedIntFile {
+
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+    private final int pageInts;
+    private final LinkedHashMap<Long, int[]> pages;
+    private final ByteBuffer readBuffer;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param channel  открытый для чтения файл (закрывает его владелец)
+     * @param offset   смещение первого элемента в файле, байт
+     * @param length   количество элементов
+     * @param pageInts элементов на странице
+     * @param maxPages сколько страниц держать в памяти
+     */
+    public PagedIntFile(FileChannel channel, long offset, long length, int pageInts, int maxPages) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        this.pageInts = pageInts;
+        this.readBuffer = ByteBuffer.allocate(pageInts * 4);
+        this.pages = new LinkedHashMap<Long, int[]>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Элемент массива.
+     * @param index номер элемента
+     * @throws UncheckedIOException при ошибке чтения файла
+     */
+    public int get(long index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Нет элемента " + index + " (всего: " + length + ")");
+        }
+        long page = index / pageInts;
+        int[] values = pages.get(page);
+        if (values == null) {
+            misses++;
+            values = readPage(page);
+            pages.put(page, values);
+        } else {
+            hits++;
+        }
+        return values[(int) (index - page * pageInts)];
+    }
+
+    /**
+     * Количество элементов.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Сколько страниц сейчас в памяти.
+     */
+    public int getCachedPages() {
+        return pages.size();
+    }
+
+    /**
+     * Доля обращений, обслуженных из памяти (0..1).
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private int[] readPage(long page) {
+        long first = page * pageInts;
+        int count = (int) Math.min(pageInts, length - first);
+        readBuffer.clear().limit(count * 4);
+        long position = offset + first * 4;
+        try {
+            while (readBuffer.hasRemaining()) {
+                if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+                    throw new IOException("Файл короче ожидаемого");
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Ошибка чтения страницы " + page, ex);
+        }
+        readBuffer.flip();
+        int[] values = new int[count];
+        readBuffer.asIntBuffer().get(values);
+        return values;
+    }
+}
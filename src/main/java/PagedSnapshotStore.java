@@ -0,0 +1,186 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Постраничное чтение двоичного снимка ({@link BinarySnapshot}) для архивов, которые не
+ * помещаются в память целиком.
+ * <p>
+ * В отличие от {@link BinarySnapshot}, ни записи, ни словари не загружаются и не отображаются
+ * целиком: записи строк и таблицы смещений словарей читаются страницами через
+ * {@link PagedIntFile}, а строки словарей — по одной, с небольшим LRU-кэшем уже прочитанных.
+ * Объём кучи ограничен размерами кэшей и не зависит от числа строк в файле.
+ * Не потокобезопасен: используется из одного потока (обычно EDT).
+ */
+public class PagedSnapshotStore implements Closeable {
+
+    private static final int COLUMNS = BinarySnapshot.COLUMNS;
+    /** Строк на странице записей и сколько страниц держать в памяти (~6 МБ). */
+    private static final int RECORD_PAGE_ROWS = 1024;
+    private static final int RECORD_PAGES = 256;
+    /** Страницы таблиц смещений словарей (на каждую колонку). */
+    private static final int OFFSET_PAGE_INTS = 1024;
+    private static final int OFFSET_PAGES = 32;
+    /** Сколько прочитанных строк словарей держать в памяти. */
+    private static final int STRING_CACHE = 16 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int rowCount;
+    private final PagedIntFile records;
+    private final PagedIntFile[] offsets = new PagedIntFile[COLUMNS];
+    private final long[] stringAreas = new long[COLUMNS];
+    private final int[] dictionarySizes = new int[COLUMNS];
+    private final LinkedHashMap<Long, String> strings = new LinkedHashMap<Long, String>(STRING_CACHE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > STRING_CACHE;
+        }
+    };
+
+    private PagedSnapshotStore(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        long length = channel.size();
+
+        ByteBuffer header = read(0, BinarySnapshot.HEADER_SIZE);
+        if (header.getInt(0) != BinarySnapshot.MAGIC) {
+            throw new IOException("Файл не является двоичным снимком: " + file);
+        }
+        if (header.getShort(4) != BinarySnapshot.VERSION || header.getShort(6) != COLUMNS) {
+            throw new IOException("Неподдерживаемая версия двоичного снимка: " + file);
+        }
+        rowCount = header.getInt(BinarySnapshot.ROW_COUNT_OFFSET);
+        long recordsOffset = header.getLong(BinarySnapshot.RECORDS_OFFSET);
+        if (rowCount < 0 || recordsOffset < BinarySnapshot.HEADER_SIZE
+                || recordsOffset + (long) rowCount * COLUMNS * 4 > length) {
+            throw new IOException("Повреждённый двоичный снимок: " + file);
+        }
+        records = new PagedIntFile(channel, recordsOffset, (long) rowCount * COLUMNS,
+                RECORD_PAGE_ROWS * COLUMNS, RECORD_PAGES);
+
+        for (int col = 0; col < COLUMNS; col++) {
+            long offset = header.getLong(BinarySnapshot.DICTIONARIES_OFFSET + 8 * col);
+            if (offset < BinarySnapshot.HEADER_SIZE || offset + 4 > recordsOffset) {
+                throw new IOException("Повреждённый словарь колонки " + col + " в " + file);
+            }
+            int size = read(offset, 4).getInt(0);
+            long stringArea = offset + 4 + 4L * (size + 1);
+            if (size < 0 || stringArea > recordsOffset) {
+                throw new IOException("Повреждённый словарь колонки " + col + " в " + file);
+            }
+            dictionarySizes[col] = size;
+            offsets[col] = new PagedIntFile(channel, offset + 4, size + 1L, OFFSET_PAGE_INTS, OFFSET_PAGES);
+            stringAreas[col] = stringArea;
+        }
+    }
+
+    /**
+     * Открывает снимок: читаются только заголовок и размеры словарей.
+     * @param file файл двоичного снимка
+     * @return открытое хранилище
+     * @throws IOException если файл не читается или не является снимком
+     */
+    public static PagedSnapshotStore open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new PagedSnapshotStore(file, channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Количество строк.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Код значения ячейки в словаре колонки.
+     * @param row номер строки в файле
+     * @param column номер колонки
+     */
+    public int getCode(int row, int column) {
+        return records.get((long) row * COLUMNS + column);
+    }
+
+    /**
+     * Количество значений в словаре колонки.
+     */
+    public int getDictionarySize(int column) {
+        return dictionarySizes[column];
+    }
+
+    /**
+     * Значение словаря колонки по коду.
+     * @param column номер колонки
+     * @param code код значения
+     * @throws UncheckedIOException при ошибке чтения файла
+     */
+    public String getDictionaryValue(int column, int code) {
+        long key = ((long) column << 32) | code;
+        String value = strings.get(key);
+        if (value == null) {
+            int start = offsets[column].get(code);
+            int end = offsets[column].get(code + 1L);
+            try {
+                ByteBuffer bytes = read(stringAreas[column] + start, end - start);
+                value = new String(bytes.array(), 0, end - start, StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            strings.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Значение ячейки.
+     * @param row номер строки в файле
+     * @param column номер колонки
+     */
+    public String getValueAt(int row, int column) {
+        return getDictionaryValue(column, getCode(row, column));
+    }
+
+    /**
+     * Файл снимка.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Краткое состояние кэшей для строки состояния.
+     */
+    public String getCacheStats() {
+        return String.format("страниц записей в памяти: %d, попаданий %.0f%%, строк словарей: %d",
+                records.getCachedPages(), records.getHitRatio() * 100, strings.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл короче ожидаемого: " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,55 @@
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import net.sf.jasperreports.engine.JRRewindableDataSource;
+
+/**
+ * Источник данных JasperReports поверх снимка таблицы пациентов.
+ * В отличие от JRXmlDataSource не требует сохранять таблицу на диск и не вычисляет XPath
+ * для каждого поля: значения берутся напрямую из снимка по номеру колонки.
+ * Поля отчета сопоставляются с колонками по имени (name, disease, doctor, specialization, date, status).
+ */
+public class PatientDataSource implements JRRewindableDataSource {
+
+    private final PatientSnapshot snapshot;
+    private int row = -1;
+
+    /**
+     * @param snapshot снимок таблицы пациентов
+     */
+    public PatientDataSource(PatientSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Число строк в источнике.
+     */
+    public int getRowCount() {
+        return snapshot.getRowCount();
+    }
+
+    @Override
+    public boolean next() {
+        if (row + 1 < snapshot.getRowCount()) {
+            row++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        int column = XMLfile.fieldIndex(field.getName());
+        if (column < 0 && field.getDescription() != null) {
+            column = XMLfile.fieldIndex(field.getDescription().trim());
+        }
+        if (column < 0) {
+            throw new JRException("Неизвестное поле отчета: " + field.getName());
+        }
+        return snapshot.getValueAt(row, column);
+    }
+
+    @Override
+    public void moveFirst() {
+        row = -1;
+    }
+}
@@ -0,0 +1,95 @@
+import javax.swing.DefaultRowSorter;
+import javax.swing.table.TableRowSorter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Сортировщик строк для {@link PatientTableModel}.
+ * Для колонки даты сортировщику отдаются заранее подготовленные {@link DateSortKey}
+ * (по одному на каждую различную дату), так что при сортировке не создаются форматтеры
+ * и не разбираются строки.
+ */
+public class PatientRowSorter extends TableRowSorter<PatientTableModel> {
+
+    public PatientRowSorter(PatientTableModel model) {
+        super(model);
+        setModelWrapper(new DateKeyModelWrapper(model));
+        setComparator(PatientTableModel.DATE, Comparator.<DateSortKey>naturalOrder());
+    }
+
+    private boolean timing; // уже внутри замеряемой сортировки
+
+    // Смена ключей (щелчок по заголовку) и пересортировка (смена фильтра, изменение модели) —
+    // операции для Metrics. Замер нужен в обоих местах: при первой сортировке
+    // DefaultRowSorter.setSortKeys обходит sort().
+    @Override
+    public void setSortKeys(List<? extends SortKey> sortKeys) {
+        timed(() -> super.setSortKeys(sortKeys));
+    }
+
+    @Override
+    public void sort() {
+        timed(super::sort);
+    }
+
+    private void timed(Runnable sorting) {
+        if (timing) {
+            sorting.run();
+            return;
+        }
+        timing = true;
+        try (Metrics.Operation op = Metrics.begin("sort").rows(getModelRowCount())) {
+            sorting.run();
+            StringJoiner keys = new StringJoiner(",");
+            for (SortKey key : getSortKeys()) {
+                keys.add(getModel().getColumnName(key.getColumn()) + " " + key.getSortOrder());
+            }
+            op.detail(keys.toString()).succeeded();
+        } finally {
+            timing = false;
+        }
+    }
+
+    // Как и стандартная обёртка TableRowSorter, но для колонки даты возвращает ключ сортировки
+    private static class DateKeyModelWrapper extends DefaultRowSorter.ModelWrapper<PatientTableModel, Integer> {
+        private final PatientTableModel model;
+
+        DateKeyModelWrapper(PatientTableModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public PatientTableModel getModel() {
+            return model;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return model.getColumnCount();
+        }
+
+        @Override
+        public int getRowCount() {
+            return model.getRowCount();
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == PatientTableModel.DATE) {
+                return model.getDateSortKey(row);
+            }
+            return model.getValueAt(row, column);
+        }
+
+        @Override
+        public String getStringValueAt(int row, int column) {
+            return model.getValueAt(row, column); // фильтры видят обычный текст ячейки
+        }
+
+        @Override
+        public Integer getIdentifier(int row) {
+            return row;
+        }
+    }
+}
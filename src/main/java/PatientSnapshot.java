@@ -0,0 +1,175 @@
+import javax.swing.table.TableModel;
+import java.util.Arrays;
+
+/**
+ * Неизменяемый снимок строк таблицы пациентов.
+ * Снимок снимается в потоке Swing (EDT), после чего его можно спокойно читать из любых потоков:
+ * сохранять в файл, строить по нему отчёты и т.д.
+ * <p>
+ * Снимок {@link PatientTableModel} хранится так же по колонкам: копируются только массивы кодов,
+ * а сами строки словарей (они никогда не меняются) используются совместно с моделью.
+ */
+public final class PatientSnapshot {
+
+    /** Число колонок таблицы пациентов. */
+    public static final int COLUMN_COUNT = 6;
+
+    private final int rowCount;
+    private final int[][] codes;          // коды для колонок со словарями (индекс — номер колонки)
+    private final String[][] dictionaries; // значения словарей (индекс — номер колонки)
+    private final short[] statuses;
+
+    PatientSnapshot(int rowCount, int[][] codes, String[][] dictionaries, short[] statuses) {
+        this.rowCount = rowCount;
+        this.codes = codes;
+        this.dictionaries = dictionaries;
+        this.statuses = statuses;
+    }
+
+    /**
+     * Снимает копию всех строк модели. Вызывать в потоке, который владеет моделью (обычно EDT).
+     * @param tableModel модель таблицы пациентов
+     * @return снимок данных
+     */
+    public static PatientSnapshot of(TableModel tableModel) {
+        if (tableModel instanceof PatientTableModel) {
+            return ((PatientTableModel) tableModel).snapshot();
+        }
+        PatientTableModel copy = new PatientTableModel();
+        Object[] values = new Object[COLUMN_COUNT];
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                values[col] = tableModel.getValueAt(row, col);
+            }
+            copy.addRow(values);
+        }
+        return copy.snapshot();
+    }
+
+    /**
+     * Количество строк в снимке.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Значение ячейки снимка.
+     * @param row номер строки
+     * @param column номер колонки (в порядке колонок таблицы)
+     */
+    public String getValueAt(int row, int column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Нет строки " + row + " (всего строк: " + rowCount + ")");
+        }
+        if (column == PatientTableModel.STATUS) {
+            return dictionaries[column][statuses[row]];
+        }
+        return dictionaries[column][codes[column][row]];
+    }
+
+    /**
+     * Код значения ячейки в словаре колонки (для записи в двоичный снимок).
+     * @param row номер строки
+     * @param column номер колонки
+     */
+    int getCode(int row, int column) {
+        return column == PatientTableModel.STATUS ? statuses[row] : codes[column][row];
+    }
+
+    /**
+     * Значение словаря колонки по коду.
+     * @param column номер колонки
+     * @param code код, встречающийся в колонке
+     */
+    String getDictionaryValue(int column, int code) {
+        return dictionaries[column][code];
+    }
+
+    /**
+     * Размер массива словаря колонки: все коды колонки меньше него.
+     * @param column номер колонки
+     */
+    int getDictionaryLength(int column) {
+        return dictionaries[column].length;
+    }
+
+    /**
+     * Построитель снимка без модели таблицы: значения строк сразу кодируются в словари колонок,
+     * без индексов поиска и ключей сортировки дат, которые нужны только таблице окна.
+     * Используется при чтении файлов для отчётов ({@link XMLfile#readSnapshot}).
+     */
+    static final class Builder {
+        private final StringDictionary[] dictionaries = new StringDictionary[COLUMN_COUNT];
+        private final int[][] codes = new int[COLUMN_COUNT][];
+        private short[] statuses = new short[16];
+        private int rowCount;
+
+        Builder() {
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                dictionaries[col] = new StringDictionary();
+                if (col != PatientTableModel.STATUS) {
+                    codes[col] = new int[16];
+                }
+            }
+            // Коды известных статусов — как в модели таблицы (порядковый номер в AppointmentStatus)
+            for (AppointmentStatus status : AppointmentStatus.values()) {
+                dictionaries[PatientTableModel.STATUS].intern(status.getLabel());
+            }
+        }
+
+        /**
+         * Добавляет строку.
+         * @param values шесть значений в порядке колонок ({@code null} — пустая строка)
+         * @throws IllegalArgumentException если значений меньше шести или слишком много различных статусов
+         */
+        void addRow(String[] values) {
+            if (values.length < COLUMN_COUNT) {
+                throw new IllegalArgumentException("Ожидается " + COLUMN_COUNT + " значений, получено " + values.length);
+            }
+            StringDictionary statusDict = dictionaries[PatientTableModel.STATUS];
+            String status = values[PatientTableModel.STATUS] != null ? values[PatientTableModel.STATUS] : "";
+            if (statusDict.size() >= PatientTableModel.MAX_STATUSES && statusDict.find(status) < 0) {
+                throw new IllegalArgumentException("Слишком много различных статусов приёма: " + status);
+            }
+            if (rowCount == statuses.length) {
+                int capacity = rowCount + (rowCount >> 1);
+                for (int col = 0; col < COLUMN_COUNT; col++) {
+                    if (codes[col] != null) {
+                        codes[col] = Arrays.copyOf(codes[col], capacity);
+                    }
+                }
+                statuses = Arrays.copyOf(statuses, capacity);
+            }
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                if (col != PatientTableModel.STATUS) {
+                    codes[col][rowCount] = dictionaries[col].intern(values[col] != null ? values[col] : "");
+                }
+            }
+            statuses[rowCount] = (short) statusDict.intern(status);
+            rowCount++;
+        }
+
+        /**
+         * Количество добавленных строк.
+         */
+        int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Снимок добавленных строк.
+         */
+        PatientSnapshot build() {
+            int[][] rowCodes = new int[COLUMN_COUNT][];
+            String[][] values = new String[COLUMN_COUNT][];
+            for (int col = 0; col < COLUMN_COUNT; col++) {
+                if (codes[col] != null) {
+                    rowCodes[col] = Arrays.copyOf(codes[col], rowCount);
+                }
+                values[col] = dictionaries[col].values();
+            }
+            return new PatientSnapshot(rowCount, rowCodes, values, Arrays.copyOf(statuses, rowCount));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Сводные числа по таблице пациентов: записи по статусу, врачу, специализации и дате приёма,
+ * в каждой группе — с разбивкой по статусу (например, «Waiting у каждого врача»).
+ * <p>
+ * Счётчики ведутся по кодам словарей модели и обновляются по событиям модели: добавление,
+ * изменение и удаление строки — несколько увеличений счётчиков, без обхода таблицы (прежние
+ * значения изменяемой строки приходят через {@link PatientTableModel.RowChangeListener}).
+ * Заново по всем строкам счётчики строятся только при замене всех данных (загрузка файла).
+ * Все методы вызываются в потоке Swing (EDT).
+ */
+public class PatientStatistics implements TableModelListener, PatientTableModel.RowChangeListener {
+
+    /** Группировки. */
+    public enum Grouping {
+        STATUS("По статусу", PatientTableModel.STATUS),
+        DOCTOR("По врачу", PatientTableModel.DOCTOR),
+        SPECIALIZATION("По специализации", PatientTableModel.SPECIALIZATION),
+        DAY("По дням", PatientTableModel.DATE),
+        MONTH("По месяцам", PatientTableModel.DATE);
+
+        private final String title;
+        private final int column;
+
+        Grouping(String title, int column) {
+            this.title = title;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    /** Колонки разбивки по статусу: три известных статуса и все остальные. */
+    public static final String[] STATUS_SLOTS = {
+            AppointmentStatus.ACCEPTED.getLabel(), AppointmentStatus.WAITING.getLabel(),
+            AppointmentStatus.CANCELED.getLabel(), "Другие"};
+
+    private static final int SLOTS = STATUS_SLOTS.length;
+    private static final int[] COLUMNS = {PatientTableModel.STATUS, PatientTableModel.DOCTOR,
+            PatientTableModel.SPECIALIZATION, PatientTableModel.DATE};
+
+    private final PatientTableModel tableModel;
+    private final EventListenerList listeners = new EventListenerList();
+
+    // Для каждой колонки из COLUMNS: счётчик [код значения * SLOTS + слот статуса]
+    private final int[][] counts = new int[COLUMNS.length][];
+    private int total;
+    private int removedRows; // строки, уже вычтенные в rowChanging и ждущие события об изменении
+
+    /**
+     * Подключается к модели и сразу считает её текущие строки.
+     * @param tableModel модель таблицы пациентов
+     */
+    public PatientStatistics(PatientTableModel tableModel) {
+        this.tableModel = tableModel;
+        rebuild();
+        tableModel.addTableModelListener(this);
+        tableModel.addRowChangeListener(this);
+    }
+
+    /**
+     * Отключается от модели.
+     */
+    public void detach() {
+        tableModel.removeTableModelListener(this);
+        tableModel.removeRowChangeListener(this);
+    }
+
+    /**
+     * Подписка на изменение чисел (вызывается после каждого изменения модели, в EDT).
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(ChangeListener.class, listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(ChangeListener.class, listener);
+    }
+
+    /**
+     * Всего записей.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    @Override
+    public void rowChanging(int row) {
+        count(row, -1);
+        removedRows++;
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        int first = e.getFirstRow();
+        int last = e.getLastRow();
+        if (first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+            rebuild(); // модель заменена целиком
+        } else if (e.getType() == TableModelEvent.INSERT) {
+            for (int row = first; row <= last; row++) {
+                count(row, +1);
+            }
+        } else if (e.getType() == TableModelEvent.DELETE) {
+            removedRows -= last - first + 1; // вычтены в rowChanging
+        } else if (removedRows >= last - first + 1) {
+            for (int row = first; row <= last; row++) {
+                count(row, +1); // прежние значения вычтены в rowChanging, добавляем новые
+            }
+            removedRows -= last - first + 1;
+        } else {
+            rebuild(); // изменение без предупреждения — считать по разнице нечего
+        }
+        fireChanged();
+    }
+
+    /**
+     * Строки сводки для группировки: значение группы, число записей по каждому слоту
+     * {@link #STATUS_SLOTS} и всего. Пустые группы пропускаются. Врачи и специализации
+     * упорядочены по убыванию числа записей, даты — по возрастанию, статусы — по коду.
+     * Обходятся только различные значения колонки, а не строки таблицы.
+     * @param grouping группировка
+     * @return строки: {@code [String группа, Integer... слоты, Integer всего]}
+     */
+    public List<Object[]> rows(Grouping grouping) {
+        int[] columnCounts = counts[columnIndex(grouping.column)];
+        // Массив счётчиков растёт с запасом, коды за пределами словаря не встречались
+        int codes = Math.min(columnCounts.length / SLOTS, tableModel.getDictionarySize(grouping.column));
+        if (grouping == Grouping.DAY || grouping == Grouping.MONTH) {
+            return dateRows(columnCounts, codes, grouping == Grouping.MONTH);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (int code = 0; code < codes; code++) {
+            Object[] row = groupRow(tableModel.getDictionaryValue(grouping.column, code), columnCounts, code);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        if (grouping != Grouping.STATUS) {
+            rows.sort(Comparator.comparing((Object[] row) -> (Integer) row[SLOTS + 1]).reversed());
+        }
+        return rows;
+    }
+
+    // Дни (или месяцы) по возрастанию; некорректные даты — отдельной группой в конце
+    private List<Object[]> dateRows(int[] columnCounts, int codes, boolean byMonth) {
+        TreeMap<Integer, int[]> buckets = new TreeMap<>();
+        TreeMap<Integer, String> labels = new TreeMap<>();
+        for (int code = 0; code < codes; code++) {
+            int epochDay = tableModel.getEpochDayOfCode(code);
+            int key;
+            String label;
+            if (epochDay == AppointmentDates.NO_DATE) {
+                key = Integer.MAX_VALUE;
+                label = "Без даты";
+            } else if (byMonth) {
+                LocalDate date = LocalDate.ofEpochDay(epochDay);
+                key = date.getYear() * 12 + date.getMonthValue() - 1;
+                label = String.format("%02d.%d", date.getMonthValue(), date.getYear());
+            } else {
+                key = epochDay;
+                label = tableModel.getDictionaryValue(PatientTableModel.DATE, code);
+            }
+            int[] bucket = buckets.computeIfAbsent(key, k -> new int[SLOTS]);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                bucket[slot] += columnCounts[code * SLOTS + slot];
+            }
+            labels.putIfAbsent(key, label);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Integer key : buckets.keySet()) {
+            Object[] row = groupRow(labels.get(key), buckets.get(key), 0);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static Object[] groupRow(String label, int[] slots, int code) {
+        Object[] row = new Object[SLOTS + 2];
+        row[0] = label;
+        int sum = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int count = slots[code * SLOTS + slot];
+            row[slot + 1] = count;
+            sum += count;
+        }
+        row[SLOTS + 1] = sum;
+        return sum == 0 ? null : row;
+    }
+
+    // Учитывает строку модели во всех счётчиках с весом delta (+1 или -1)
+    private void count(int row, int delta) {
+        int status = tableModel.getCode(row, PatientTableModel.STATUS);
+        int slot = status < SLOTS - 1 ? status : SLOTS - 1;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            int index = tableModel.getCode(row, COLUMNS[i]) * SLOTS + slot;
+            if (index >= counts[i].length) {
+                counts[i] = Arrays.copyOf(counts[i], Math.max(index + 1, counts[i].length * 2));
+            }
+            counts[i][index] += delta;
+        }
+        total += delta;
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            counts[i] = new int[Math.max(1, tableModel.getDictionarySize(COLUMNS[i])) * SLOTS];
+        }
+        total = 0;
+        removedRows = 0;
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            count(row, +1);
+        }
+        Metrics.record("statistics.rebuild.ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static int columnIndex(int column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i] == column) {
+                return i;
+            }
+        }
+        throw new IndexOutOfBoundsException("Нет сводки по колонке " + column);
+    }
+
+    private void fireChanged() {
+        ChangeEvent event = new ChangeEvent(this);
+        for (ChangeListener listener : listeners.getListeners(ChangeListener.class)) {
+            listener.stateChanged(event);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EventListener;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Модель таблицы пациентов с хранением по колонкам.
+ * <p>
+ * Вместо {@code Vector<Vector<Object>>} каждая колонка хранится отдельным массивом:
+ * <ul>
+ *     <li>имя пациента, диагноз, врач и специализация — коды в словарях различных значений
+ *     ({@link StringDictionary}); словари колонок, по которым идёт поиск, ведут триграммный индекс;</li>
+ *     <li>дата приёма — код в словаре различных дат, для каждой из которых один раз
+ *     вычисляется номер дня (epoch day) и готовый {@link DateSortKey};</li>
+ *     <li>статус — код типа {@code short} (до {@value #MAX_STATUSES} различных статусов); коды известных
+ *     статусов совпадают с {@link AppointmentStatus#ordinal()}.</li>
+ * </ul>
+ * Для {@code JTable}, {@code XMLfile} и {@code Listeners} модель выглядит как обычная таблица
+ * из шести строковых колонок.
+ */
+public class PatientTableModel extends AbstractTableModel {
+
+    /** Заголовки колонок таблицы. */
+    public static final String[] COLUMN_NAMES = {"Фамилия Имя", "Диагноз", "Специалист",
+            "Специализация врача", "Дата приёма", "Статус приёма"};
+
+    public static final int NAME = 0;
+    public static final int DISEASE = 1;
+    public static final int DOCTOR = 2;
+    public static final int SPECIALIZATION = 3;
+    public static final int DATE = 4;
+    public static final int STATUS = 5;
+
+    private static final int INITIAL_CAPACITY = 64;
+    /** Наибольшее число различных статусов приёма (коды статусов хранятся в {@code short}). */
+    public static final int MAX_STATUSES = Short.MAX_VALUE + 1;
+
+    private StringDictionary nameDict = new StringDictionary(true);
+    private StringDictionary diseaseDict = new StringDictionary(true);
+    private StringDictionary doctorDict = new StringDictionary(true);
+    private StringDictionary specializationDict = new StringDictionary();
+    private StringDictionary dateDict = new StringDictionary();
+    private StringDictionary statusDict = new StringDictionary();
+
+    private DateSortKey[] dateKeys = new DateSortKey[16]; // ключ сортировки (epoch day) для каждого кода даты
+
+    private int[] names = new int[INITIAL_CAPACITY];
+    private int[] diseases = new int[INITIAL_CAPACITY];
+    private int[] doctors = new int[INITIAL_CAPACITY];
+    private int[] specializations = new int[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private short[] statuses = new short[INITIAL_CAPACITY];
+    private int rowCount;
+
+    public PatientTableModel() {
+        initStatuses();
+    }
+
+    /**
+     * Слушатель, которому нужны прежние значения строки: вызывается до её удаления или изменения
+     * (событие {@code TableModelEvent} о самом изменении приходит, как обычно, после).
+     * Замена всех строк (загрузка файла, очистка) так не сообщается — только событием об изменении всех данных.
+     */
+    public interface RowChangeListener extends EventListener {
+        /**
+         * @param row номер строки модели; её значения ещё прежние
+         */
+        void rowChanging(int row);
+    }
+
+    public void addRowChangeListener(RowChangeListener listener) {
+        listenerList.add(RowChangeListener.class, listener);
+    }
+
+    public void removeRowChangeListener(RowChangeListener listener) {
+        listenerList.remove(RowChangeListener.class, listener);
+    }
+
+    private void fireRowChanging(int row) {
+        for (RowChangeListener listener : listenerList.getListeners(RowChangeListener.class)) {
+            listener.rowChanging(row);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return true; // как и у DefaultTableModel
+    }
+
+    @Override
+    public String getValueAt(int rowIndex, int columnIndex) {
+        checkRow(rowIndex);
+        switch (columnIndex) {
+            case NAME:
+                return nameDict.get(names[rowIndex]);
+            case DISEASE:
+                return diseaseDict.get(diseases[rowIndex]);
+            case DOCTOR:
+                return doctorDict.get(doctors[rowIndex]);
+            case SPECIALIZATION:
+                return specializationDict.get(specializations[rowIndex]);
+            case DATE:
+                return dateDict.get(dates[rowIndex]);
+            case STATUS:
+                return statusDict.get(statuses[rowIndex]);
+            default:
+                throw new IndexOutOfBoundsException("Нет колонки " + columnIndex);
+        }
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        checkRow(rowIndex);
+        fireRowChanging(rowIndex);
+        try {
+            setCell(rowIndex, columnIndex, aValue != null ? aValue.toString() : "");
+        } finally {
+            fireTableCellUpdated(rowIndex, columnIndex); // и при ошибке: слушатели уже получили rowChanging
+        }
+    }
+
+    /**
+     * Добавляет строку в конец таблицы.
+     * @param values шесть значений в порядке колонок
+     */
+    public void addRow(Object[] values) {
+        int row = rowCount;
+        ensureCapacity(rowCount + 1);
+        putRow(row, values);
+        rowCount++;
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Заменяет все значения строки одним событием.
+     * @param row номер строки в модели
+     * @param values шесть значений в порядке колонок
+     */
+    public void setRow(int row, Object[] values) {
+        checkRow(row);
+        fireRowChanging(row);
+        try {
+            putRow(row, values);
+        } finally {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Добавляет несколько строк в конец таблицы одним событием.
+     * @param rows строки по шесть значений в порядке колонок
+     */
+    public void addRows(List<? extends Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int first = rowCount;
+        ensureCapacity(rowCount + rows.size());
+        for (Object[] values : rows) {
+            putRow(rowCount++, values);
+        }
+        fireTableRowsInserted(first, rowCount - 1);
+    }
+
+    /**
+     * Полностью заменяет содержимое таблицы (словари строятся заново) одним событием.
+     * @param rows строки по шесть значений в порядке колонок
+     */
+    public void setRows(List<? extends Object[]> rows) {
+        resetStorage(Math.max(INITIAL_CAPACITY, rows.size()));
+        for (Object[] values : rows) {
+            putRow(rowCount++, values);
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Заменяет содержимое таблицы данными из ранее снятого снимка (например, при отмене загрузки).
+     * @param snapshot снимок, снятый с этой или другой модели
+     */
+    public void restore(PatientSnapshot snapshot) {
+        int rows = snapshot.getRowCount();
+        resetStorage(Math.max(INITIAL_CAPACITY, rows));
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < COLUMN_NAMES.length; col++) {
+                setCell(row, col, snapshot.getValueAt(row, col));
+            }
+            rowCount++;
+        }
+        fireTableDataChanged();
+    }
+
+    /**
+     * Количество различных значений в словаре колонки.
+     * Коды значений, появившихся позже, будут не меньше этого числа.
+     * @param column номер колонки
+     */
+    public int getDictionarySize(int column) {
+        return dictionary(column).size();
+    }
+
+    /**
+     * Удаляет строку.
+     * @param row номер строки в модели
+     */
+    public void removeRow(int row) {
+        checkRow(row);
+        fireRowChanging(row);
+        int tail = rowCount - row - 1;
+        System.arraycopy(names, row + 1, names, row, tail);
+        System.arraycopy(diseases, row + 1, diseases, row, tail);
+        System.arraycopy(doctors, row + 1, doctors, row, tail);
+        System.arraycopy(specializations, row + 1, specializations, row, tail);
+        System.arraycopy(dates, row + 1, dates, row, tail);
+        System.arraycopy(statuses, row + 1, statuses, row, tail);
+        rowCount--;
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Удаляет все строки и очищает словари.
+     */
+    public void clear() {
+        resetStorage(INITIAL_CAPACITY);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Номер дня (epoch day) даты приёма в строке или {@link AppointmentDates#NO_DATE}, если дата некорректна.
+     */
+    public int getDateKey(int row) {
+        checkRow(row);
+        return dateKeys[dates[row]].getEpochDay();
+    }
+
+    /**
+     * Готовый ключ сортировки даты приёма (один общий объект на каждую различную дату).
+     */
+    public DateSortKey getDateSortKey(int row) {
+        checkRow(row);
+        return dateKeys[dates[row]];
+    }
+
+    /**
+     * Номер дня (epoch day) даты по её коду в словаре колонки даты или {@link AppointmentDates#NO_DATE}.
+     */
+    public int getEpochDayOfCode(int dateCode) {
+        return dateKeys[dateCode].getEpochDay();
+    }
+
+    /**
+     * Значение словаря колонки по коду.
+     * @param column номер колонки
+     * @param code код значения ({@link #getCode})
+     */
+    public String getDictionaryValue(int column, int code) {
+        return dictionary(column).get(code);
+    }
+
+    /**
+     * Известный статус строки или {@code null}, если статус нестандартный.
+     */
+    public AppointmentStatus getStatus(int row) {
+        checkRow(row);
+        return AppointmentStatus.fromCode(statuses[row]);
+    }
+
+    /**
+     * Код значения ячейки в словаре её колонки.
+     * @param row номер строки в модели
+     * @param column номер колонки
+     */
+    public int getCode(int row, int column) {
+        checkRow(row);
+        return codeAt(row, column);
+    }
+
+    /**
+     * Копия колонки кодов (для обработки в фоновом потоке).
+     * @param column номер колонки
+     */
+    public int[] copyCodes(int column) {
+        if (column == STATUS) {
+            int[] copy = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                copy[row] = statuses[row];
+            }
+            return copy;
+        }
+        return Arrays.copyOf(intColumn(column), rowCount);
+    }
+
+    /**
+     * Коды словаря колонки, значения которых содержат подстроку (без учёта регистра).
+     * Для имени пациента, диагноза и врача используется триграммный индекс.
+     * @param column номер колонки
+     * @param query подстрока для поиска
+     */
+    public BitSet findCodes(int column, String query) {
+        return dictionary(column).search(query);
+    }
+
+    /**
+     * Все строки модели, у которых значение колонки содержит подстроку (без учёта регистра).
+     * Строки сравниваются только по кодам: сначала по индексу находятся подходящие значения,
+     * затем проходится массив кодов колонки.
+     * @param column номер колонки
+     * @param query подстрока для поиска
+     * @return номера строк модели
+     */
+    public BitSet findRows(int column, String query) {
+        BitSet codes = findCodes(column, query);
+        BitSet rows = new BitSet(rowCount);
+        if (codes.isEmpty()) {
+            return rows;
+        }
+        if (column == STATUS) {
+            for (int row = 0; row < rowCount; row++) {
+                if (codes.get(statuses[row])) {
+                    rows.set(row);
+                }
+            }
+            return rows;
+        }
+        int[] columnCodes = intColumn(column);
+        for (int row = 0; row < rowCount; row++) {
+            if (codes.get(columnCodes[row])) {
+                rows.set(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Заменяет содержимое таблицы данными двоичного снимка одним событием.
+     * Каждое различное значение словарей снимка добавляется в словари модели один раз,
+     * а строки заполняются перекодировкой целых кодов, без обработки строк.
+     * @param snapshot открытый двоичный снимок
+     */
+    public void load(BinarySnapshot snapshot) {
+        load(snapshot, null);
+    }
+
+    /**
+     * То же, что {@link #load(BinarySnapshot)}, с сообщением о ходе загрузки.
+     * Чтобы загрузить снимок не в потоке Swing, его загружают в новую модель без слушателей,
+     * а затем переносят в таблицу через {@link #takeContents(PatientTableModel)}.
+     * @param snapshot открытый двоичный снимок
+     * @param progress получает процент выполненной работы (0-100), может быть {@code null};
+     *                 исключение из него прерывает загрузку
+     */
+    public void load(BinarySnapshot snapshot, IntConsumer progress) {
+        int rows = snapshot.getRowCount();
+        // Проверка кодов, словари и перекодировка строк — примерно треть работы каждая
+        int step = Math.max(1, rows / 100);
+        // Сначала проверяем коды, чтобы повреждённый снимок не испортил текущие данные
+        if (snapshot.getDictionarySize(STATUS) > MAX_STATUSES) {
+            throw new IllegalArgumentException("Слишком много различных статусов приёма в двоичном снимке");
+        }
+        for (int row = 0; row < rows; row++) {
+            if (progress != null && row % step == 0) {
+                progress.accept((int) (row * 33L / rows));
+            }
+            for (int col = 0; col < COLUMN_NAMES.length; col++) {
+                int code = snapshot.getCode(row, col);
+                if (code < 0 || code >= snapshot.getDictionarySize(col)) {
+                    throw new IllegalArgumentException("Неверный код " + code + " в строке " + row
+                            + ", колонке " + col + " двоичного снимка");
+                }
+            }
+        }
+        resetStorage(Math.max(INITIAL_CAPACITY, rows));
+        int[][] remap = new int[COLUMN_NAMES.length][];
+        for (int col = 0; col < COLUMN_NAMES.length; col++) {
+            if (progress != null) {
+                progress.accept(33 + col * 33 / COLUMN_NAMES.length);
+            }
+            int size = snapshot.getDictionarySize(col);
+            remap[col] = new int[size];
+            for (int code = 0; code < size; code++) {
+                String value = snapshot.getDictionaryValue(col, code);
+                remap[col][code] = col == DATE ? internDate(value)
+                        : col == STATUS ? internStatus(value)
+                        : dictionary(col).intern(value);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (progress != null && row % step == 0) {
+                progress.accept(66 + (int) (row * 33L / rows));
+            }
+            names[row] = remap[NAME][snapshot.getCode(row, NAME)];
+            diseases[row] = remap[DISEASE][snapshot.getCode(row, DISEASE)];
+            doctors[row] = remap[DOCTOR][snapshot.getCode(row, DOCTOR)];
+            specializations[row] = remap[SPECIALIZATION][snapshot.getCode(row, SPECIALIZATION)];
+            dates[row] = remap[DATE][snapshot.getCode(row, DATE)];
+            statuses[row] = (short) remap[STATUS][snapshot.getCode(row, STATUS)];
+        }
+        rowCount = rows;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Заменяет содержимое таблицы содержимым другой модели одним событием, без копирования:
+     * словари и колонки переходят к этой модели, а другая остаётся пустой.
+     * @param source модель, подготовленная в другом потоке и больше им не используемая
+     */
+    public void takeContents(PatientTableModel source) {
+        nameDict = source.nameDict;
+        diseaseDict = source.diseaseDict;
+        doctorDict = source.doctorDict;
+        specializationDict = source.specializationDict;
+        dateDict = source.dateDict;
+        statusDict = source.statusDict;
+        dateKeys = source.dateKeys;
+        names = source.names;
+        diseases = source.diseases;
+        doctors = source.doctors;
+        specializations = source.specializations;
+        dates = source.dates;
+        statuses = source.statuses;
+        rowCount = source.rowCount;
+
+        source.nameDict = new StringDictionary(true);
+        source.diseaseDict = new StringDictionary(true);
+        source.doctorDict = new StringDictionary(true);
+        source.specializationDict = new StringDictionary();
+        source.dateDict = new StringDictionary();
+        source.statusDict = new StringDictionary();
+        source.resetStorage(INITIAL_CAPACITY);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Снимок текущих данных для чтения из других потоков (см. {@link PatientSnapshot}).
+     * Вызывать в потоке, который владеет моделью (обычно EDT).
+     */
+    public PatientSnapshot snapshot() {
+        int[][] codes = new int[COLUMN_NAMES.length][];
+        codes[NAME] = Arrays.copyOf(names, rowCount);
+        codes[DISEASE] = Arrays.copyOf(diseases, rowCount);
+        codes[DOCTOR] = Arrays.copyOf(doctors, rowCount);
+        codes[SPECIALIZATION] = Arrays.copyOf(specializations, rowCount);
+        codes[DATE] = Arrays.copyOf(dates, rowCount);
+        String[][] dictionaries = new String[COLUMN_NAMES.length][];
+        dictionaries[NAME] = nameDict.values();
+        dictionaries[DISEASE] = diseaseDict.values();
+        dictionaries[DOCTOR] = doctorDict.values();
+        dictionaries[SPECIALIZATION] = specializationDict.values();
+        dictionaries[DATE] = dateDict.values();
+        dictionaries[STATUS] = statusDict.values();
+        return new PatientSnapshot(rowCount, codes, dictionaries, Arrays.copyOf(statuses, rowCount));
+    }
+
+    private int codeAt(int row, int column) {
+        return column == STATUS ? statuses[row] : intColumn(column)[row];
+    }
+
+    private int[] intColumn(int column) {
+        switch (column) {
+            case NAME:
+                return names;
+            case DISEASE:
+                return diseases;
+            case DOCTOR:
+                return doctors;
+            case SPECIALIZATION:
+                return specializations;
+            case DATE:
+                return dates;
+            default:
+                throw new IndexOutOfBoundsException("Нет колонки кодов " + column);
+        }
+    }
+
+    private StringDictionary dictionary(int column) {
+        switch (column) {
+            case NAME:
+                return nameDict;
+            case DISEASE:
+                return diseaseDict;
+            case DOCTOR:
+                return doctorDict;
+            case SPECIALIZATION:
+                return specializationDict;
+            case DATE:
+                return dateDict;
+            case STATUS:
+                return statusDict;
+            default:
+                throw new IndexOutOfBoundsException("Нет колонки " + column);
+        }
+    }
+
+    private void putRow(int row, Object[] values) {
+        if (values.length < COLUMN_NAMES.length) {
+            throw new IllegalArgumentException("Ожидается " + COLUMN_NAMES.length + " значений, получено " + values.length);
+        }
+        // Статус проверяется до записи, чтобы отвергнутая строка не осталась наполовину изменённой
+        checkStatus(values[STATUS] != null ? values[STATUS].toString() : "");
+        for (int col = 0; col < COLUMN_NAMES.length; col++) {
+            setCell(row, col, values[col] != null ? values[col].toString() : "");
+        }
+    }
+
+    private void setCell(int row, int column, String value) {
+        switch (column) {
+            case NAME:
+                names[row] = nameDict.intern(value);
+                break;
+            case DISEASE:
+                diseases[row] = diseaseDict.intern(value);
+                break;
+            case DOCTOR:
+                doctors[row] = doctorDict.intern(value);
+                break;
+            case SPECIALIZATION:
+                specializations[row] = specializationDict.intern(value);
+                break;
+            case DATE:
+                dates[row] = internDate(value);
+                break;
+            case STATUS:
+                statuses[row] = internStatus(value);
+                break;
+            default:
+                throw new IndexOutOfBoundsException("Нет колонки " + column);
+        }
+    }
+
+    private int internDate(String value) {
+        int before = dateDict.size();
+        int code = dateDict.intern(value);
+        if (code == before) { // новая дата — разбираем её один раз
+            if (code == dateKeys.length) {
+                dateKeys = Arrays.copyOf(dateKeys, code * 2);
+            }
+            dateKeys[code] = new DateSortKey(AppointmentDates.parse(value), value);
+        }
+        return code;
+    }
+
+    private short internStatus(String value) {
+        checkStatus(value);
+        return (short) statusDict.intern(value);
+    }
+
+    // Новый статус не помещается в коды — отвергаем до добавления в словарь
+    private void checkStatus(String value) {
+        if (statusDict.size() >= MAX_STATUSES && statusDict.find(value) < 0) {
+            throw new IllegalArgumentException("Слишком много различных статусов приёма: " + value);
+        }
+    }
+
+    private void initStatuses() {
+        // Известные статусы получают коды, равные порядковому номеру в AppointmentStatus
+        for (AppointmentStatus status : AppointmentStatus.values()) {
+            statusDict.intern(status.getLabel());
+        }
+    }
+
+    private void resetStorage(int capacity) {
+        nameDict.clear();
+        diseaseDict.clear();
+        doctorDict.clear();
+        specializationDict.clear();
+        dateDict.clear();
+        statusDict.clear();
+        initStatuses();
+        dateKeys = new DateSortKey[16];
+        names = new int[capacity];
+        diseases = new int[capacity];
+        doctors = new int[capacity];
+        specializations = new int[capacity];
+        dates = new int[capacity];
+        statuses = new short[capacity];
+        rowCount = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= names.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, names.length + (names.length >> 1));
+        names = Arrays.copyOf(names, newCapacity);
+        diseases = Arrays.copyOf(diseases, newCapacity);
+        doctors = Arrays.copyOf(doctors, newCapacity);
+        specializations = Arrays.copyOf(specializations, newCapacity);
+        dates = Arrays.copyOf(dates, newCapacity);
+        statuses = Arrays.copyOf(statuses, newCapacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Нет строки " + row + " (всего строк: " + rowCount + ")");
+        }
+    }
+}
@@ -1,13 +1,69 @@
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRXmlDataSource;
+import net.sf.jasperreports.engine.export.JRCsvExporter;
+import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimpleWriterExporterOutput;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
- * Класс, содержащий генераторы для отчетов
+ * Класс, содержащий генераторы для отчетов.
+ * <p>
+ * Большие отчеты (от {@link #setVirtualizeRows порога строк}, по умолчанию {@value #DEFAULT_VIRTUALIZE_ROWS},
+ * меняется свойством {@code clinic.reports.virtualizeRows}) заполняются с виртуализацией: в памяти
+ * держится не больше {@value #VIRTUALIZER_PAGES} страниц, остальные выгружаются в файл подкачки
+ * (в каталоге из свойства {@code clinic.reports.swapDir} или во временном), который удаляется
+ * после экспорта. Так расход памяти не зависит от числа страниц отчета.
  */
 public class ReportGenerator {
+
+    /** Системное свойство с числом строк, начиная с которого отчет заполняется с виртуализацией. */
+    public static final String VIRTUALIZE_ROWS_PROPERTY = "clinic.reports.virtualizeRows";
+    /** Системное свойство с каталогом для файлов подкачки виртуализации. */
+    public static final String SWAP_DIR_PROPERTY = "clinic.reports.swapDir";
+    /** Порог виртуализации по умолчанию. */
+    public static final int DEFAULT_VIRTUALIZE_ROWS = 50_000;
+
+    private static final int VIRTUALIZER_PAGES = 50;   // страниц отчета в памяти
+    private static final int SWAP_BLOCK_SIZE = 4096;
+    private static final int SWAP_GROW_BLOCKS = 256;
+    private static final int XML_BYTES_PER_ROW = 200; // оценка числа строк XML-источника по размеру файла
+
+    /**
+     * Общий ограниченный пул для параллельного экспорта одного заполненного отчета в несколько форматов.
+     */
+    private static final ExecutorService EXPORT_EXECUTOR = createExportExecutor();
+
+    private int virtualizeRows = Integer.getInteger(VIRTUALIZE_ROWS_PROPERTY, DEFAULT_VIRTUALIZE_ROWS);
+
+    /**
+     * Задает число строк, начиная с которого отчет заполняется с виртуализацией.
+     * @param virtualizeRows порог ({@link Integer#MAX_VALUE} — не виртуализировать никогда)
+     */
+    public void setVirtualizeRows(int virtualizeRows) {
+        this.virtualizeRows = virtualizeRows;
+    }
+
     /**
      * Метод для генерации отчета на основе XML файла и сохранения в формате PDF.
      * @param reportPath путь к файлу отчета (.jrxml)
@@ -16,7 +72,7 @@ public class ReportGenerator {
      * @throws JRException при возникновении ошибок JasperReports
      */
     public void generatePdfReport(String reportPath, String xmlFilePath, String outputFilePath) throws JRException {
-        generateReport(reportPath, xmlFilePath, outputFilePath, ReportType.PDF);
+        generateReport(reportPath, xmlFilePath, outputFilePath, ReportFormat.PDF);
     }
 
     /**
@@ -27,7 +83,60 @@ public class ReportGenerator {
      * @throws JRException при возникновении ошибок JasperReports
      */
     public void generateHtmlReport(String reportPath, String xmlFilePath, String outputFilePath) throws JRException {
-        generateReport(reportPath, xmlFilePath, outputFilePath, ReportType.HTML);
+        generateReport(reportPath, xmlFilePath, outputFilePath, ReportFormat.HTML);
+    }
+
+    /**
+     * Метод для генерации PDF отчета по текущим данным таблицы (включая несохранённые изменения).
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param snapshot снимок таблицы пациентов
+     * @param outputFilePath путь для сохранения выходного PDF файла
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public void generatePdfReport(String reportPath, PatientSnapshot snapshot, String outputFilePath) throws JRException {
+        try (FilledReport filled = fill(reportPath, new PatientDataSource(snapshot), snapshot.getRowCount())) {
+            exportReport(filled.print, ReportFormat.PDF, outputFilePath);
+        }
+    }
+
+    /**
+     * Метод для генерации HTML отчета по текущим данным таблицы (включая несохранённые изменения).
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param snapshot снимок таблицы пациентов
+     * @param outputFilePath путь для сохранения выходного HTML файла
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public void generateHtmlReport(String reportPath, PatientSnapshot snapshot, String outputFilePath) throws JRException {
+        try (FilledReport filled = fill(reportPath, new PatientDataSource(snapshot), snapshot.getRowCount())) {
+            exportReport(filled.print, ReportFormat.HTML, outputFilePath);
+        }
+    }
+
+    /**
+     * Заполняет отчет один раз и экспортирует его сразу в несколько форматов (параллельно).
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param xmlFilePath путь к XML файлу с данными
+     * @param outputs пути выходных файлов для каждого нужного формата
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public void generateReports(String reportPath, String xmlFilePath, Map<ReportFormat, String> outputs) throws JRException {
+        try (FilledReport filled = fill(reportPath, xmlDataSource(xmlFilePath), estimateRows(xmlFilePath))) {
+            exportReport(filled, outputs);
+        }
+    }
+
+    /**
+     * Заполняет отчет один раз данными из снимка таблицы (без записи на диск) и экспортирует
+     * его в несколько форматов.
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param snapshot снимок таблицы пациентов
+     * @param outputs пути выходных файлов для каждого нужного формата
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public void generateReports(String reportPath, PatientSnapshot snapshot, Map<ReportFormat, String> outputs) throws JRException {
+        try (FilledReport filled = fill(reportPath, new PatientDataSource(snapshot), snapshot.getRowCount())) {
+            exportReport(filled, outputs);
+        }
     }
 
     /**
@@ -35,16 +144,43 @@ public class ReportGenerator {
      * @param reportPath путь к файлу отчета (.jrxml)
      * @param xmlFilePath путь к XML файлу с данными
      * @param outputFilePath путь для сохранения выходного файла
-     * @param reportType тип отчета (PDF или HTML)
+     * @param reportFormat формат отчета
      * @throws JRException при возникновении ошибок JasperReports
      */
-    private void generateReport(String reportPath, String xmlFilePath, String outputFilePath, ReportType reportType) throws JRException {
-        // Проверяем наличие файла отчета
-        File reportFile = new File(reportPath);
-        if (!reportFile.exists()) {
-            throw new RuntimeException("Файл отчета не найден: " + reportPath);
+    private void generateReport(String reportPath, String xmlFilePath, String outputFilePath, ReportFormat reportFormat) throws JRException {
+        try (FilledReport filled = fill(reportPath, xmlDataSource(xmlFilePath), estimateRows(xmlFilePath))) {
+            exportReport(filled.print, reportFormat, outputFilePath);
         }
+    }
 
+    /**
+     * Компилирует (через кэш) и заполняет отчет данными из XML файла.
+     * Отчет заполняется целиком в памяти; для больших данных лучше методы generate*, которые
+     * сами включают виртуализацию.
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param xmlFilePath путь к XML файлу с данными
+     * @return заполненный отчет, готовый к экспорту в любой формат
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public JasperPrint fillReport(String reportPath, String xmlFilePath) throws JRException {
+        return fillReport(reportPath, xmlDataSource(xmlFilePath));
+    }
+
+    /**
+     * Компилирует (через кэш) и заполняет отчет из произвольного источника данных,
+     * например {@link PatientDataSource} поверх снимка таблицы.
+     * Отчет заполняется целиком в памяти (см. {@link #fillReport(String, String)}).
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param dataSource источник данных
+     * @return заполненный отчет, готовый к экспорту в любой формат
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public JasperPrint fillReport(String reportPath, JRDataSource dataSource) throws JRException {
+        return fill(reportPath, dataSource, -1).print;
+    }
+
+    // Источник данных из XML файла
+    private static JRXmlDataSource xmlDataSource(String xmlFilePath) throws JRException {
         // Проверяем наличие XML файла с данными
         File xmlFile = new File(xmlFilePath);
         if (!xmlFile.exists()) {
@@ -52,19 +188,136 @@ public class ReportGenerator {
         }
 
         // Создаем источник данных из XML файла
-        JRXmlDataSource xmlDataSource = new JRXmlDataSource(xmlFile, "/patients/patient");
+        return new JRXmlDataSource(xmlFile, "/patients/patient");
+    }
+
+    private static long estimateRows(String xmlFilePath) {
+        return new File(xmlFilePath).length() / XML_BYTES_PER_ROW;
+    }
+
+    // Компилирует (через кэш) и заполняет отчет; rows — число строк источника или -1, если неизвестно
+    private FilledReport fill(String reportPath, JRDataSource dataSource, long rows) throws JRException {
+        // Проверяем наличие файла отчета
+        File reportFile = new File(reportPath);
+        if (!reportFile.exists()) {
+            throw new RuntimeException("Файл отчета не найден: " + reportPath);
+        }
 
-        // Компилируем JRXML отчет
-        JasperReport jasperReport = JasperCompileManager.compileReport(reportPath);
+        // Берём скомпилированный отчет из кэша (компилируется только при изменении шаблона)
+        JasperReport jasperReport = CompiledReportCache.getInstance().get(reportPath);
+        return fill(jasperReport, reportFile.getName(), dataSource, rows);
+    }
 
+    // Заполнение уже скомпилированного отчета; один JasperReport можно заполнять из нескольких потоков сразу
+    private FilledReport fill(JasperReport jasperReport, String reportName, JRDataSource dataSource, long rows)
+            throws JRException {
         // Параметры (если нужны, передаются в HashMap)
         HashMap<String, Object> parameters = new HashMap<>();
 
+        // Большой отчет: страницы сверх VIRTUALIZER_PAGES уходят в файл подкачки
+        JRSwapFileVirtualizer virtualizer = null;
+        if (rows >= virtualizeRows) {
+            String swapDir = System.getProperty(SWAP_DIR_PROPERTY, System.getProperty("java.io.tmpdir"));
+            virtualizer = new JRSwapFileVirtualizer(VIRTUALIZER_PAGES,
+                    new JRSwapFile(swapDir, SWAP_BLOCK_SIZE, SWAP_GROW_BLOCKS), true);
+            parameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            Metrics.increment("report.virtualized");
+        }
+
         // Заполняем отчет данными
-        JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, xmlDataSource);
+        try (Metrics.Operation op = Metrics.begin("report.fill")
+                .detail(virtualizer != null ? reportName + " (virtualized)" : reportName)) {
+            if (rows >= 0) {
+                op.rows((int) Math.min(Integer.MAX_VALUE, rows));
+            }
+            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, parameters, dataSource);
+            if (virtualizer != null) {
+                virtualizer.setReadOnly(true); // страницы больше не меняются, подкачка только читает
+            }
+            op.succeeded();
+            return new FilledReport(jasperPrint, virtualizer);
+        } catch (JRException | RuntimeException ex) {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+            throw ex;
+        }
+    }
 
-        // Экспортируем отчет в соответствующий формат
-        switch (reportType) {
+    // Экспорт отчета, заполненного с виртуализацией, идет по одному формату: страницы
+    // подкачиваются из общего файла, и параллельные экспортеры только мешали бы друг другу
+    private void exportReport(FilledReport filled, Map<ReportFormat, String> outputs) throws JRException {
+        if (filled.virtualizer == null) {
+            exportReport(filled.print, outputs);
+            return;
+        }
+        for (Map.Entry<ReportFormat, String> output : outputs.entrySet()) {
+            exportReport(filled.print, output.getKey(), output.getValue());
+        }
+    }
+
+    /**
+     * Экспортирует один заполненный отчет в несколько форматов.
+     * Экспорт в разные форматы выполняется параллельно на общем ограниченном пуле потоков;
+     * метод возвращается, когда все файлы записаны.
+     * @param jasperPrint заполненный отчет
+     * @param outputs пути выходных файлов для каждого нужного формата
+     * @throws JRException если хотя бы один экспорт не удался (остальные ошибки добавлены как suppressed)
+     */
+    public void exportReport(JasperPrint jasperPrint, Map<ReportFormat, String> outputs) throws JRException {
+        if (outputs.size() == 1) {
+            Map.Entry<ReportFormat, String> only = outputs.entrySet().iterator().next();
+            exportReport(jasperPrint, only.getKey(), only.getValue());
+            return;
+        }
+
+        Map<ReportFormat, Future<?>> futures = new EnumMap<>(ReportFormat.class);
+        for (Map.Entry<ReportFormat, String> output : outputs.entrySet()) {
+            futures.put(output.getKey(), EXPORT_EXECUTOR.submit(() -> {
+                exportReport(jasperPrint, output.getKey(), output.getValue());
+                return null;
+            }));
+        }
+
+        JRException failure = null;
+        for (Map.Entry<ReportFormat, Future<?>> future : futures.entrySet()) {
+            try {
+                future.getValue().get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                throw new JRException("Экспорт отчета прерван", ex);
+            } catch (ExecutionException ex) {
+                JRException error = new JRException("Ошибка экспорта в " + future.getKey() + ": "
+                        + ex.getCause().getMessage(), ex.getCause());
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Экспортирует заполненный отчет в один формат.
+     * @param jasperPrint заполненный отчет
+     * @param reportFormat формат отчета
+     * @param outputFilePath путь для сохранения выходного файла
+     * @throws JRException при возникновении ошибок JasperReports
+     */
+    public void exportReport(JasperPrint jasperPrint, ReportFormat reportFormat, String outputFilePath) throws JRException {
+        try (Metrics.Operation op = Metrics.begin("report.export." + reportFormat.getExtension())) {
+            export(jasperPrint, reportFormat, outputFilePath);
+            op.file(new File(outputFilePath)).succeeded(); // размер уже записанного файла
+        }
+    }
+
+    private static void export(JasperPrint jasperPrint, ReportFormat reportFormat, String outputFilePath) throws JRException {
+        switch (reportFormat) {
             case PDF:
                 JasperExportManager.exportReportToPdfFile(jasperPrint, outputFilePath);
                 System.out.println("PDF отчет успешно создан: " + outputFilePath);
@@ -74,11 +327,200 @@ public class ReportGenerator {
                 JasperExportManager.exportReportToHtmlFile(jasperPrint, outputFilePath);
                 System.out.println("HTML отчет успешно создан: " + outputFilePath);
                 break;
+
+            case CSV:
+                JRCsvExporter csvExporter = new JRCsvExporter();
+                csvExporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+                csvExporter.setExporterOutput(new SimpleWriterExporterOutput(new File(outputFilePath), "UTF-8"));
+                csvExporter.exportReport();
+                System.out.println("CSV отчет успешно создан: " + outputFilePath);
+                break;
+
+            case XLSX:
+                JRXlsxExporter xlsxExporter = new JRXlsxExporter();
+                xlsxExporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+                xlsxExporter.setExporterOutput(new SimpleOutputStreamExporterOutput(new File(outputFilePath)));
+                xlsxExporter.exportReport();
+                System.out.println("XLSX отчет успешно создан: " + outputFilePath);
+                break;
+        }
+    }
+
+    /**
+     * Строит отчеты по нескольким XML-файлам параллельно: шаблон компилируется (или берётся из кэша)
+     * один раз, и этот же {@link JasperReport} заполняется для каждого файла. Файл читается в снимок,
+     * отчет заполняется и экспортируется во все форматы в одном потоке пула из {@code parallelism}
+     * потоков, так что одновременно в памяти не больше {@code parallelism} заполненных отчетов.
+     * Ошибка в одном файле не прерывает остальные: она попадает в его результат.
+     * @param reportPath путь к файлу отчета (.jrxml)
+     * @param xmlFiles файлы с данными
+     * @param outputs пути выходных файлов по форматам для каждого файла данных (если функция
+     *                выбрасывает исключение, это ошибка только этого файла)
+     * @param parallelism сколько файлов обрабатывать одновременно (например, число ядер)
+     * @return результаты в порядке {@code xmlFiles}
+     * @throws JRException если шаблон не найден или не компилируется (тогда файлы не обрабатываются)
+     */
+    public List<BatchResult> generateBatch(String reportPath, List<File> xmlFiles,
+                                           Function<File, Map<ReportFormat, String>> outputs,
+                                           int parallelism) throws JRException {
+        File reportFile = new File(reportPath);
+        if (!reportFile.exists()) {
+            throw new RuntimeException("Файл отчета не найден: " + reportPath);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + parallelism);
+        }
+        JasperReport jasperReport = CompiledReportCache.getInstance().get(reportPath);
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, xmlFiles.size())), r -> {
+            Thread thread = new Thread(r, "report-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<BatchResult>> futures = new ArrayList<>();
+            for (File xmlFile : xmlFiles) {
+                futures.add(executor.submit(() -> generateOne(jasperReport, reportFile.getName(), xmlFile, outputs)));
+            }
+            List<BatchResult> results = new ArrayList<>();
+            for (Future<BatchResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new JRException("Построение отчетов прервано", ex);
+                } catch (ExecutionException ex) {
+                    throw new JRException(ex.getCause()); // generateOne сам ловит ошибки файла
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    // Перечисление для типов отчетов
-    private enum ReportType {
-        PDF, HTML
+    // Один файл пакета: ошибки не выбрасываются, а возвращаются в результате
+    private BatchResult generateOne(JasperReport jasperReport, String reportName, File xmlFile,
+                                    Function<File, Map<ReportFormat, String>> outputPaths) {
+        BatchResult result = new BatchResult(xmlFile);
+        long start = System.nanoTime();
+        try {
+            Map<ReportFormat, String> outputs = outputPaths.apply(xmlFile);
+            result.outputs = outputs.values();
+            PatientSnapshot snapshot = XMLfile.readSnapshot(xmlFile);
+            result.rowCount = snapshot.getRowCount();
+            long reportStart = System.nanoTime();
+            result.readMillis = (reportStart - start) / 1_000_000;
+
+            PatientDataSource dataSource = new PatientDataSource(snapshot);
+            try (FilledReport filled = fill(jasperReport, reportName, dataSource, snapshot.getRowCount())) {
+                for (Map.Entry<ReportFormat, String> output : outputs.entrySet()) {
+                    exportReport(filled.print, output.getKey(), output.getValue());
+                }
+            }
+            result.reportMillis = (System.nanoTime() - reportStart) / 1_000_000;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            result.failure = ex;
+        }
+        return result;
+    }
+
+    private static ExecutorService createExportExecutor() {
+        int threads = Math.min(ReportFormat.values().length, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "report-export-" + counter.incrementAndGet());
+                    thread.setDaemon(true); // не мешаем завершению приложения
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Заполненный отчет и его виртуализатор (если был): после экспорта файл подкачки удаляется
+    private static final class FilledReport implements AutoCloseable {
+        final JasperPrint print;
+        final JRSwapFileVirtualizer virtualizer;
+
+        FilledReport(JasperPrint print, JRSwapFileVirtualizer virtualizer) {
+            this.print = print;
+            this.virtualizer = virtualizer;
+        }
+
+        @Override
+        public void close() {
+            if (virtualizer != null) {
+                virtualizer.cleanup();
+            }
+        }
+    }
+
+    /**
+     * Итог построения отчетов по одному файлу пакета ({@link #generateBatch}).
+     */
+    public static class BatchResult {
+        private final File xmlFile;
+        private Collection<String> outputs = Collections.emptyList();
+        private int rowCount;
+        private long readMillis;
+        private long reportMillis;
+        private Exception failure;
+
+        BatchResult(File xmlFile) {
+            this.xmlFile = xmlFile;
+        }
+
+        /** Файл с данными. */
+        public File getXmlFile() {
+            return xmlFile;
+        }
+
+        /** Пути выходных файлов (пусто, если их не удалось определить). */
+        public Collection<String> getOutputs() {
+            return outputs;
+        }
+
+        /** Число строк в файле данных. */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /** Время чтения файла данных, мс. */
+        public long getReadMillis() {
+            return readMillis;
+        }
+
+        /** Время заполнения и экспорта отчета, мс. */
+        public long getReportMillis() {
+            return reportMillis;
+        }
+
+        /** Ошибка или {@code null}, если все отчеты по файлу построены. */
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Форматы, в которые можно экспортировать отчет.
+     */
+    public enum ReportFormat {
+        PDF("pdf"), HTML("html"), CSV("csv"), XLSX("xlsx");
+
+        private final String extension;
+
+        ReportFormat(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Расширение выходного файла без точки.
+         */
+        public String getExtension() {
+            return extension;
+        }
     }
 }
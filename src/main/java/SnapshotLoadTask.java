@@ -0,0 +1,99 @@
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import java.awt.Component;
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Фоновая загрузка двоичного снимка ({@link BinarySnapshot}) в таблицу.
+ * <p>
+ * Снимок загружается в рабочем потоке в отдельную модель, а в таблицу переносится одним
+ * событием в потоке Swing, так что до конца загрузки таблица показывает прежние данные.
+ * Ход загрузки показывается в {@link ProgressMonitor}; при нажатии "Отмена" таблица не меняется.
+ * Если снимок не удалось прочитать, файл загружается из XML ({@link XmlLoadTask}).
+ */
+public class SnapshotLoadTask extends SwingWorker<PatientTableModel, Void> {
+
+    private final PatientTableModel tableModel;
+    private final File file;
+    private final Component parent;
+    private final Consumer<File> onLoaded;
+    private final Runnable onFailed;
+
+    private ProgressMonitor progressMonitor;
+
+    /**
+     * @param tableModel модель таблицы, куда будут загружены данные
+     * @param file       файл XML, для которого записан снимок
+     * @param parent     окно, над которым показывается ход загрузки и сообщения
+     * @param onLoaded   вызывается в потоке Swing после успешной загрузки
+     * @param onFailed   вызывается в потоке Swing после отмены или неудачной загрузки из XML;
+     *                   может быть {@code null}
+     */
+    public SnapshotLoadTask(PatientTableModel tableModel, File file, Component parent,
+                            Consumer<File> onLoaded, Runnable onFailed) {
+        this.tableModel = tableModel;
+        this.file = file;
+        this.parent = parent;
+        this.onLoaded = onLoaded;
+        this.onFailed = onFailed;
+    }
+
+    /**
+     * Запускает загрузку. Вызывать в потоке Swing (EDT).
+     */
+    public void start() {
+        progressMonitor = new ProgressMonitor(parent, "Загрузка " + file.getName(), "", 0, 100);
+        progressMonitor.setMillisToDecideToPopup(200);
+        addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName()) && !isDone()) {
+                progressMonitor.setProgress((Integer) evt.getNewValue());
+                if (progressMonitor.isCanceled()) {
+                    cancel(true);
+                }
+            }
+        });
+        execute();
+    }
+
+    @Override
+    protected PatientTableModel doInBackground() throws Exception {
+        File snapshotFile = BinarySnapshot.fileFor(file);
+        PatientTableModel loaded = new PatientTableModel();
+        try (Metrics.Operation op = Metrics.begin("snapshot.load").file(snapshotFile).detail("background");
+             BinarySnapshot snapshot = BinarySnapshot.open(snapshotFile)) {
+            loaded.load(snapshot, percent -> {
+                if (isCancelled()) {
+                    throw new CancellationException(); // прерываем загрузку
+                }
+                setProgress(Math.min(99, percent));
+            });
+            op.rows(loaded.getRowCount()).succeeded();
+        }
+        return loaded;
+    }
+
+    @Override
+    protected void done() {
+        progressMonitor.close();
+        try {
+            PatientTableModel loaded = get();
+            tableModel.takeContents(loaded);
+            System.out.println("Загружено записей: " + tableModel.getRowCount() + " из " + BinarySnapshot.fileFor(file));
+            if (onLoaded != null) {
+                onLoaded.accept(file);
+            }
+        } catch (CancellationException ex) {
+            System.out.println("Загрузка отменена: " + file);
+            if (onFailed != null) {
+                onFailed.run();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            cause.printStackTrace(); // читаем XML
+            new XmlLoadTask(tableModel, file, parent, onLoaded, onFailed).start();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Окно сводки ({@link PatientStatistics}): число записей по выбранной группировке с разбивкой
+ * по статусу. Числа обновляются сами при изменении таблицы; частые изменения подряд
+ * (например, вставка многих строк) дают одно обновление окна.
+ */
+public class StatisticsWindow extends JFrame {
+
+    private static final int REFRESH_DELAY_MS = 250;
+
+    private final PatientStatistics statistics;
+    private final JComboBox<PatientStatistics.Grouping> grouping =
+            new JComboBox<>(PatientStatistics.Grouping.values());
+    private final SummaryModel summaryModel = new SummaryModel();
+    private final JLabel info = new JLabel();
+    private final Timer refreshTimer;
+    private final ChangeListener changeListener;
+
+    /**
+     * @param statistics сводка, которую показывает окно
+     */
+    public StatisticsWindow(PatientStatistics statistics) {
+        super("Статистика");
+        this.statistics = statistics;
+        setSize(800, 500);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        JTable summaryTable = new JTable(summaryModel);
+        summaryTable.setAutoCreateRowSorter(true);
+        add(new JScrollPane(summaryTable), BorderLayout.CENTER);
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        topPanel.add(new JLabel("Группировка:"));
+        topPanel.add(grouping);
+        add(topPanel, BorderLayout.NORTH);
+        add(info, BorderLayout.SOUTH);
+
+        grouping.addActionListener(e -> refresh());
+        refreshTimer = new Timer(REFRESH_DELAY_MS, e -> refresh());
+        refreshTimer.setRepeats(false);
+        changeListener = e -> refreshTimer.restart();
+        statistics.addChangeListener(changeListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                refreshTimer.stop();
+                statistics.removeChangeListener(changeListener);
+            }
+        });
+        refresh();
+    }
+
+    private void refresh() {
+        PatientStatistics.Grouping selected = (PatientStatistics.Grouping) grouping.getSelectedItem();
+        summaryModel.setRows(statistics.rows(selected));
+        info.setText("Всего записей: " + statistics.getTotal() + ", групп: " + summaryModel.getRowCount());
+    }
+
+    // Строки сводки: группа, слоты статусов, всего
+    private static class SummaryModel extends AbstractTableModel {
+        private List<Object[]> rows = new ArrayList<>();
+
+        void setRows(List<Object[]> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return PatientStatistics.STATUS_SLOTS.length + 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            if (column == 0) {
+                return "Группа";
+            }
+            return column <= PatientStatistics.STATUS_SLOTS.length ? PatientStatistics.STATUS_SLOTS[column - 1] : "Всего";
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Integer.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
@@ -0,0 +1,69 @@
+import javax.swing.JTable;
+import javax.swing.plaf.basic.BasicHTML;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import java.awt.Color;
+import java.awt.Component;
+
+/**
+ * Отрисовщик строковых ячеек таблицы пациентов: в колонке статуса фон по статусу приёма
+ * (зелёный, жёлтый, красный), остальные ячейки рисуются как обычно.
+ * <p>
+ * Цвет берётся из заранее созданного массива по порядковому номеру {@link AppointmentStatus}.
+ * Для {@link PatientTableModel} статус строки определяется по коду в модели, без сравнения
+ * строк; для других моделей текст ячейки сравнивается с метками статусов. Обычные ячейки
+ * статус не ищут вовсе. Во время отрисовки ничего не создаётся. Выделенная строка рисуется
+ * обычными цветами выделения таблицы.
+ */
+public class StatusCellRenderer extends DefaultTableCellRenderer {
+
+    /** Фон по порядковому номеру статуса. */
+    private static final Color[] BACKGROUNDS = new Color[AppointmentStatus.values().length];
+    private static final AppointmentStatus[] STATUSES = AppointmentStatus.values();
+
+    static {
+        BACKGROUNDS[AppointmentStatus.ACCEPTED.ordinal()] = Color.GREEN;
+        BACKGROUNDS[AppointmentStatus.WAITING.ordinal()] = Color.YELLOW;
+        BACKGROUNDS[AppointmentStatus.CANCELED.ordinal()] = Color.RED;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        if (!isSelected) {
+            AppointmentStatus status = table.convertColumnIndexToModel(column) == PatientTableModel.STATUS
+                    ? statusOf(table, value, row) : null;
+            // setBackground запоминается как фон невыделенной ячейки, поэтому задаём его каждый раз
+            // (null — фон таблицы, с чередованием строк, если оно включено)
+            setBackground(status != null ? BACKGROUNDS[status.ordinal()] : null);
+        }
+        return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+        // Смена текста нужна интерфейсу метки только для HTML; для обычного текста событие
+        // лишь создавало бы PropertyChangeEvent на каждую ячейку
+        if (propertyName == "text" && !isHtml(oldValue) && !isHtml(newValue)) {
+            return;
+        }
+        super.firePropertyChange(propertyName, oldValue, newValue);
+    }
+
+    private static boolean isHtml(Object text) {
+        return text instanceof String && BasicHTML.isHTMLString((String) text);
+    }
+
+    private static AppointmentStatus statusOf(JTable table, Object value, int row) {
+        TableModel model = table.getModel();
+        if (model instanceof PatientTableModel) {
+            return ((PatientTableModel) model).getStatus(table.convertRowIndexToModel(row));
+        }
+        for (AppointmentStatus status : STATUSES) {
+            if (status.getLabel().equals(value)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Словарь строк для колонок с небольшим числом различных значений (врач, диагноз, статус и т.д.).
+ * Каждая различная строка хранится один раз и получает постоянный номер (код);
+ * в колонке таблицы хранятся только коды. Словарь только пополняется, коды не переиспользуются
+ * до полной очистки.
+ * <p>
+ * Словарь может поддерживать поиск подстроки по своим значениям ({@link TrigramIndex}),
+ * индекс при этом пополняется вместе со словарём.
+ */
+public class StringDictionary {
+
+    private final HashMap<String, Integer> codes = new HashMap<>();
+    private final TrigramIndex index;
+    private String[] values = new String[16];
+    private int size;
+
+    public StringDictionary() {
+        this(false);
+    }
+
+    /**
+     * @param searchable нужно ли поддерживать индекс для поиска подстроки
+     */
+    public StringDictionary(boolean searchable) {
+        this.index = searchable ? new TrigramIndex() : null;
+    }
+
+    /**
+     * Возвращает код строки, добавляя её в словарь при первой встрече.
+     * @param value строка
+     * @return код строки
+     */
+    public int intern(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        if (index != null) {
+            index.add(size, value);
+        }
+        return size++;
+    }
+
+    /**
+     * Коды всех значений, содержащих подстроку (без учёта регистра).
+     * Для словаря без индекса значения просто перебираются.
+     * @param query подстрока для поиска
+     * @return множество кодов
+     */
+    public BitSet search(String query) {
+        if (index != null) {
+            return index.find(query);
+        }
+        String lower = query.toLowerCase();
+        BitSet result = new BitSet(size);
+        for (int code = 0; code < size; code++) {
+            if (values[code].toLowerCase().contains(lower)) {
+                result.set(code);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Код строки или -1, если такой строки в словаре нет.
+     */
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Строка по коду.
+     */
+    public String get(int code) {
+        return values[code];
+    }
+
+    /**
+     * Количество различных строк в словаре.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Очищает словарь.
+     */
+    public void clear() {
+        codes.clear();
+        values = new String[16];
+        size = 0;
+        if (index != null) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Внутренний массив значений (первые {@link #size()} элементов).
+     * Уже записанные элементы никогда не меняются, поэтому массив можно отдавать в снимки.
+     */
+    String[] values() {
+        return values;
+    }
+}
@@ -0,0 +1,188 @@
+import javax.swing.JTable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Быстрая выгрузка таблицы в HTML или CSV без JasperReports — для простых табличных дампов.
+ * <p>
+ * Порядок строк берётся из таблицы в момент вызова {@link #of(JTable, PatientTableModel)} (учитываются
+ * сортировка и фильтр), данные — из снимка модели, поэтому сама запись может идти в любом потоке.
+ * Строки пишутся по одной в буферизованный поток, так что память не растёт с размером файла;
+ * каждое значение словаря экранируется один раз, сколько бы строк его ни содержало.
+ * Для постраничных отчётов к печати остаётся {@link ReportGenerator}.
+ */
+public final class TableExport {
+
+    /**
+     * Формат выгрузки.
+     */
+    public enum Format {
+        CSV("csv"), HTML("html");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Расширение выходного файла без точки.
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final PatientSnapshot snapshot;
+    private final int[] modelRows; // номера строк модели в порядке отображения
+
+    private TableExport(PatientSnapshot snapshot, int[] modelRows) {
+        this.snapshot = snapshot;
+        this.modelRows = modelRows;
+    }
+
+    /**
+     * Запоминает строки таблицы в порядке отображения. Вызывать в потоке Swing (EDT).
+     * @param dataTable  таблица (её сортировка и фильтр)
+     * @param tableModel модель таблицы
+     * @return выгрузка, которую можно записать в любом потоке
+     */
+    public static TableExport of(JTable dataTable, PatientTableModel tableModel) {
+        int[] modelRows = new int[dataTable.getRowCount()];
+        for (int i = 0; i < modelRows.length; i++) {
+            modelRows[i] = dataTable.convertRowIndexToModel(i);
+        }
+        return new TableExport(tableModel.snapshot(), modelRows);
+    }
+
+    /**
+     * Число строк выгрузки.
+     */
+    public int getRowCount() {
+        return modelRows.length;
+    }
+
+    /**
+     * Записывает строки в файл.
+     * @param format формат
+     * @param file   выходной файл (перезаписывается)
+     * @throws IOException при ошибке записи
+     */
+    public void write(Format format, File file) throws IOException {
+        try (Metrics.Operation op = Metrics.begin("table.export." + format.getExtension()).rows(modelRows.length);
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+                     64 * 1024)) {
+            if (format == Format.CSV) {
+                writeCsv(out);
+            } else {
+                writeHtml(out);
+            }
+            out.flush();
+            op.file(file).succeeded();
+        }
+    }
+
+    private void writeCsv(Writer out) throws IOException {
+        out.write('\uFEFF'); // BOM: иначе Excel открывает UTF-8 как однобайтовую кодировку
+        writeCsvRow(out, PatientTableModel.COLUMN_NAMES);
+        String[][] escaped = new String[PatientSnapshot.COLUMN_COUNT][];
+        for (int row : modelRows) {
+            for (int column = 0; column < PatientSnapshot.COLUMN_COUNT; column++) {
+                if (column > 0) {
+                    out.write(',');
+                }
+                out.write(escapedValue(escaped, row, column, true));
+            }
+            out.write("\r\n");
+        }
+    }
+
+    private static void writeCsvRow(Writer out, String[] values) throws IOException {
+        for (int column = 0; column < values.length; column++) {
+            if (column > 0) {
+                out.write(',');
+            }
+            out.write(escapeCsv(values[column]));
+        }
+        out.write("\r\n");
+    }
+
+    private void writeHtml(Writer out) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>Пациенты</title>\n"
+                + "<style>table{border-collapse:collapse}th,td{border:1px solid #999;padding:2px 6px}</style>\n"
+                + "</head>\n<body>\n<table>\n<thead><tr>");
+        for (String name : PatientTableModel.COLUMN_NAMES) {
+            out.write("<th>");
+            out.write(escapeHtml(name));
+            out.write("</th>");
+        }
+        out.write("</tr></thead>\n<tbody>\n");
+        String[][] escaped = new String[PatientSnapshot.COLUMN_COUNT][];
+        for (int row : modelRows) {
+            out.write("<tr>");
+            for (int column = 0; column < PatientSnapshot.COLUMN_COUNT; column++) {
+                out.write("<td>");
+                out.write(escapedValue(escaped, row, column, false));
+                out.write("</td>");
+            }
+            out.write("</tr>\n");
+        }
+        out.write("</tbody>\n</table>\n</body>\n</html>\n");
+    }
+
+    // Экранированное значение ячейки; для каждого кода словаря вычисляется при первой встрече
+    private String escapedValue(String[][] escaped, int row, int column, boolean csv) {
+        if (escaped[column] == null) {
+            escaped[column] = new String[snapshot.getDictionaryLength(column)];
+        }
+        int code = snapshot.getCode(row, column);
+        String value = escaped[column][code];
+        if (value == null) {
+            String raw = snapshot.getDictionaryValue(column, code);
+            value = csv ? escapeCsv(raw) : escapeHtml(raw);
+            escaped[column][code] = value;
+        }
+        return value;
+    }
+
+    private static String escapeCsv(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private static String escapeHtml(String value) {
+        StringBuilder result = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '&': replacement = "&amp;"; break;
+                case '"': replacement = "&quot;"; break;
+                default: replacement = null;
+            }
+            if (replacement != null && result == null) {
+                result = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            if (result != null) {
+                if (replacement != null) {
+                    result.append(replacement);
+                } else {
+                    result.append(c);
+                }
+            }
+        }
+        return result == null ? value : result.toString();
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Триграммный индекс для поиска подстроки среди значений словаря ({@link StringDictionary}).
+ * <p>
+ * Индексируются не строки таблицы, а различные значения колонки (по коду словаря),
+ * поэтому индекс пополняется только при появлении нового значения, а удаление строк
+ * его вообще не затрагивает. Для запроса из трёх и более символов берётся пересечение
+ * списков кодов по всем его триграммам, и только оставшиеся кандидаты проверяются через
+ * {@code contains}. Короткие запросы проверяются перебором различных значений.
+ * Поиск нечувствителен к регистру.
+ */
+public class TrigramIndex {
+
+    private final HashMap<Long, IntList> postings = new HashMap<>();
+    private String[] lowerValues = new String[16];
+    private int size;
+
+    /**
+     * Добавляет значение словаря в индекс. Коды должны добавляться по возрастанию (0, 1, 2...).
+     * @param code код значения в словаре
+     * @param value значение
+     */
+    public void add(int code, String value) {
+        String lower = value.toLowerCase();
+        if (code >= lowerValues.length) {
+            lowerValues = Arrays.copyOf(lowerValues, Math.max(code + 1, lowerValues.length * 2));
+        }
+        lowerValues[code] = lower;
+        size = Math.max(size, code + 1);
+
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            IntList list = postings.computeIfAbsent(trigram(lower, i), key -> new IntList());
+            if (list.size == 0 || list.last() != code) { // одна и та же триграмма может встретиться дважды
+                list.add(code);
+            }
+        }
+    }
+
+    /**
+     * Коды всех значений, содержащих {@code query} (без учёта регистра).
+     * @param query подстрока для поиска
+     * @return множество кодов словаря
+     */
+    public BitSet find(String query) {
+        String lower = query.toLowerCase();
+        BitSet result = new BitSet(size);
+        if (lower.length() < 3) {
+            for (int code = 0; code < size; code++) {
+                if (lowerValues[code].contains(lower)) {
+                    result.set(code);
+                }
+            }
+            return result;
+        }
+
+        // Начинаем с самого короткого списка, чтобы пересечение было как можно дешевле
+        IntList shortest = null;
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            IntList list = postings.get(trigram(lower, i));
+            if (list == null) {
+                return result; // такой триграммы нет ни в одном значении
+            }
+            if (shortest == null || list.size < shortest.size) {
+                shortest = list;
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            int code = shortest.values[i];
+            if (lowerValues[code].contains(lower)) {
+                result.set(code);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Очищает индекс.
+     */
+    public void clear() {
+        postings.clear();
+        lowerValues = new String[16];
+        size = 0;
+    }
+
+    private static long trigram(String s, int from) {
+        return ((long) s.charAt(from) << 32) | ((long) s.charAt(from + 1) << 16) | s.charAt(from + 2);
+    }
+
+    // Растущий массив int без упаковки в Integer
+    private static class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int last() {
+            return values[size - 1];
+        }
+    }
+}
@@ -1,11 +1,34 @@
 import org.w3c.dom.*; // объектная модель документа (DOM) --> создание объектов
 import javax.xml.parsers.*; // для создания парсеров
 // ParserConfigurationException; -- Для обработки ошибок конфигурации парсера ^
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File; // для работы с файлами
-import javax.swing.table.DefaultTableModel;
-import javax.xml.transform.*; // для преобразования и записи в XML-документ
-import javax.xml.transform.dom.DOMSource; // источник данных DOM для записи
-import javax.xml.transform.stream.StreamResult; // класс для записи XML в файл (поток)
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.table.TableModel;
+import javax.xml.stream.XMLInputFactory; // потоковый (StAX) парсер
+import javax.xml.stream.XMLOutputFactory; // потоковая запись XML
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 
 /**
@@ -13,12 +36,122 @@ import javax.xml.transform.stream.StreamResult; // класс для запис
  */
 public class XMLfile {
 
+    /**
+     * Режим загрузки XML-файла.
+     */
+    public enum LoadMode {
+        /** Потоковое чтение (StAX) за один проход, без построения дерева документа. */
+        STREAMING,
+        /** Старый способ: полное DOM-дерево документа (оставлен как запасной вариант). */
+        DOM
+    }
+
+    /** Имена дочерних элементов {@code <patient>} в порядке колонок таблицы. */
+    private static final String[] FIELDS = {"name", "disease", "doctor", "specialization", "date", "status"};
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE); // текст элемента приходит одним куском
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    }
+
+    /**
+     * Метод для загрузки данных из XML-файла и добавления их в таблицу (потоковый режим).
+     * @param tableModel модель таблицы, куда будут добавлены данные
+     * @param file файл XML, откуда будут загружены данные
+     */
+    public static void loadFromXML(PatientTableModel tableModel, File file) {
+        loadFromXML(tableModel, file, LoadMode.STREAMING);
+    }
+
     /**
      * Метод для загрузки данных из XML-файла и добавления их в таблицу.
      * @param tableModel модель таблицы, куда будут добавлены данные
      * @param file файл XML, откуда будут загружены данные
+     * @param mode режим загрузки (потоковый или DOM)
+     */
+    public static void loadFromXML(PatientTableModel tableModel, File file, LoadMode mode) {
+        try (Metrics.Operation op = Metrics.begin("xml.load").file(file).detail(mode.name())) {
+            if (mode == LoadMode.DOM) {
+                if (loadWithDom(tableModel, file)) {
+                    op.rows(tableModel.getRowCount()).succeeded();
+                }
+                return;
+            }
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+                List<String[]> rows = new ArrayList<>();
+                readPatients(in, rows::add); // сначала читаем всё в буфер, таблица пока не трогается
+
+                // Заменяем содержимое модели целиком и оповещаем таблицу одним событием
+                tableModel.setRows(rows);
+                op.rows(rows.size()).succeeded();
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Потоковое чтение записей {@code <patient>} за один проход.
+     * Каждая запись передаётся в {@code sink} массивом из шести строк в порядке колонок таблицы.
+     * @param in поток с XML-документом
+     * @param sink получатель записей
+     * @throws XMLStreamException при ошибке разбора XML
+     */
+    public static void readPatients(InputStream in, Consumer<? super String[]> sink) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String[] row = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String tag = reader.getLocalName();
+                    if ("patient".equals(tag)) {
+                        row = new String[FIELDS.length];
+                    } else if (row != null) {
+                        int column = fieldIndex(tag);
+                        if (column >= 0) {
+                            row[column] = reader.getElementText();
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && row != null
+                        && "patient".equals(reader.getLocalName())) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] == null) {
+                            throw new XMLStreamException("В записи <patient> нет элемента <" + FIELDS[i] + ">",
+                                    reader.getLocation());
+                        }
+                    }
+                    sink.accept(row);
+                    row = null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Номер колонки таблицы для дочернего элемента {@code <patient>} или -1, если элемент неизвестен.
+     */
+    static int fieldIndex(String tag) {
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (FIELDS[i].equals(tag)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Загрузка через полное DOM-дерево (запасной режим).
+     * @param tableModel модель таблицы, куда будут добавлены данные
+     * @param file файл XML, откуда будут загружены данные
+     * @return {@code false}, если файл не удалось прочитать (ошибка выведена в консоль)
      */
-    public static void loadFromXML(DefaultTableModel tableModel, File file) {
+    private static boolean loadWithDom(PatientTableModel tableModel, File file) {
         try {
             // фабрика для создания парсеров
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -30,7 +163,7 @@ public class XMLfile {
             doc.getDocumentElement().normalize(); // нормализуем "чистим после парсинга"
 
             NodeList nodeList = doc.getElementsByTagName("patient"); // загружаем все узлы пациентов (каждый 'patient')
-            tableModel.setRowCount(0); // очищаем таблицу перед загрузкой данных
+            tableModel.clear(); // очищаем таблицу перед загрузкой данных
 
             // проходимся по каждому элементу patients
             for (int i = 0; i < nodeList.getLength(); i++) {
@@ -53,68 +186,225 @@ public class XMLfile {
                     tableModel.addRow(new Object[]{name, disease, doctor, specialization, date, status});
                 }
             }
+            return true;
 
         } catch (Exception ex) { // доделать, чтобы делал полноценный вывод; ??
             ex.printStackTrace();
+            return false;
         }
     }
 
     /**
      * Метод для сохранения данных из таблицы в XML-файл.
+     * Ошибки записи выводятся в консоль, прежнее содержимое файла при этом не портится.
      * @param tableModel модель таблицы, из которой будут извлечены данные
      * @param file файл, куда будет записан XML
      */
-    public static void saveToXML (DefaultTableModel tableModel, File file) {
+    public static void saveToXML (TableModel tableModel, File file) {
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.newDocument();
-            Element root = doc.createElement("patients"); // корневой элемент
-            doc.appendChild(root);
+            writeXMLWithSnapshot(PatientSnapshot.of(tableModel), file, null);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
 
-            // проходим по строкам таблицы и создаем элементы <patient>
-            for (int row = 0; row < tableModel.getRowCount(); row++) {
-                Element patient = doc.createElement("patient");
+    /**
+     * Потоковая запись строк таблицы в XML-файл.
+     * Данные пишутся во временный файл рядом с целевым, сбрасываются на диск (fsync)
+     * и только после этого атомарно переименовываются поверх {@code file}.
+     * @param tableModel модель таблицы, из которой будут извлечены данные
+     * @param file файл, куда будет записан XML
+     * @throws IOException при ошибке записи; целевой файл в этом случае остаётся прежним
+     */
+    public static void writeXML(TableModel tableModel, File file) throws IOException {
+        writeXML(tableModel.getRowCount(), tableModel::getValueAt, file, null);
+    }
 
-                // создаем элементы <name>, <disease>, <doctor> и т.д. для каждого пациента
-                Element name = doc.createElement("name");
-                name.appendChild(doc.createTextNode(tableModel.getValueAt(row, 0).toString()));
-                patient.appendChild(name);
+    /**
+     * Потоковая атомарная запись снимка таблицы в XML-файл (можно вызывать из любого потока).
+     * @param snapshot снимок таблицы пациентов
+     * @param file файл, куда будет записан XML
+     * @throws IOException при ошибке записи; целевой файл в этом случае остаётся прежним
+     */
+    public static void writeXML(PatientSnapshot snapshot, File file) throws IOException {
+        writeXML(snapshot.getRowCount(), snapshot::getValueAt, file, null);
+    }
 
-                Element disease = doc.createElement("disease");
-                disease.appendChild(doc.createTextNode(tableModel.getValueAt(row, 1).toString()));
-                patient.appendChild(disease);
+    /**
+     * То же, что {@link #writeXML(PatientSnapshot, File)}, но с отметкой журнала изменений
+     * в атрибуте {@code journal} корневого элемента (см. {@link ChangeJournal}).
+     * @param snapshot снимок таблицы пациентов
+     * @param file файл, куда будет записан XML
+     * @param journalMark отметка журнала или {@code null}
+     * @throws IOException при ошибке записи; целевой файл в этом случае остаётся прежним
+     */
+    public static void writeXML(PatientSnapshot snapshot, File file, String journalMark) throws IOException {
+        writeXML(snapshot.getRowCount(), snapshot::getValueAt, file, journalMark);
+    }
 
-                Element doctor = doc.createElement("doctor");
-                doctor.appendChild(doc.createTextNode(tableModel.getValueAt(row, 2).toString()));
-                patient.appendChild(doctor);
+    /**
+     * Потоковая атомарная запись строк, которые выдаются по одной: в памяти держится только
+     * текущая строка, поэтому так пишутся файлы любого размера (см. {@link DatasetGenerator}).
+     * @param rowCount число строк
+     * @param rows источник строк: каждый вызов возвращает следующую строку (шесть значений в порядке колонок)
+     * @param file файл, куда будет записан XML
+     * @throws IOException при ошибке записи; целевой файл в этом случае остаётся прежним
+     */
+    public static void writeXML(int rowCount, Supplier<? extends Object[]> rows, File file) throws IOException {
+        Object[][] current = {null};
+        int[] currentRow = {-1};
+        // Запись обходит строки по порядку, так что следующая строка запрашивается при смене номера
+        writeXML(rowCount, (row, column) -> {
+            if (row != currentRow[0]) {
+                current[0] = rows.get();
+                currentRow[0] = row;
+            }
+            return current[0][column];
+        }, file, null);
+    }
 
-                Element specialization = doc.createElement("specialization");
-                specialization.appendChild(doc.createTextNode(tableModel.getValueAt(row, 3).toString()));
-                patient.appendChild(specialization);
+    /**
+     * Записывает XML, а затем рядом с ним двоичный снимок тех же данных ({@link BinarySnapshot}),
+     * по которому файл потом открывается без разбора XML. Ошибка записи снимка не считается
+     * ошибкой сохранения: устаревший снимок удаляется, и при следующем открытии читается XML.
+     * @param snapshot снимок таблицы пациентов
+     * @param file файл, куда будет записан XML
+     * @param journalMark отметка журнала изменений или {@code null}
+     * @throws IOException при ошибке записи XML
+     */
+    public static void writeXMLWithSnapshot(PatientSnapshot snapshot, File file, String journalMark) throws IOException {
+        writeXML(snapshot, file, journalMark);
+        File binary = BinarySnapshot.fileFor(file);
+        try {
+            BinarySnapshot.write(snapshot, binary, journalMark, file);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Files.deleteIfExists(binary.toPath());
+        }
+    }
 
-                Element date = doc.createElement("date");
-                date.appendChild(doc.createTextNode(tableModel.getValueAt(row, 4).toString()));
-                patient.appendChild(date);
+    /**
+     * Читает XML-файл в снимок, не трогая таблицу окна (для построения отчётов в фоне и без окна).
+     * В отличие от {@link #loadFromXML(PatientTableModel, File)} ошибки не глотаются.
+     * @param file файл XML
+     * @return снимок прочитанных записей
+     * @throws IOException при ошибке чтения или разбора
+     */
+    public static PatientSnapshot readSnapshot(File file) throws IOException {
+        try (Metrics.Operation op = Metrics.begin("xml.load").file(file).detail("snapshot");
+             InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            // Строки сразу кодируются в колонки снимка, без промежуточного списка и индексов поиска
+            PatientSnapshot.Builder builder = new PatientSnapshot.Builder();
+            readPatients(in, builder::addRow);
+            op.rows(builder.getRowCount()).succeeded();
+            return builder.build();
+        } catch (XMLStreamException ex) {
+            throw new IOException("Ошибка разбора " + file + ": " + ex.getMessage(), ex);
+        }
+    }
 
-                Element status = doc.createElement("status");
-                status.appendChild(doc.createTextNode(tableModel.getValueAt(row, 5).toString()));
-                patient.appendChild(status);
+    /**
+     * Читает атрибут {@code journal} корневого элемента (разбирается только начало файла).
+     * @param file файл XML
+     * @return отметка журнала изменений или {@code null}, если её нет
+     * @throws IOException при ошибке чтения или разбора
+     */
+    public static String readJournalMark(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        return reader.getAttributeValue(null, "journal");
+                    }
+                }
+                return null;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Ошибка разбора XML: " + ex.getMessage(), ex);
+        }
+    }
+
+    // Источник значений ячеек для записи (модель таблицы или снимок)
+    private interface CellSource {
+        Object getValueAt(int row, int column);
+    }
+
+    private static void writeXML(int rowCount, CellSource cells, File file, String journalMark) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Path dir = target.getParent();
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try (Metrics.Operation op = Metrics.begin("xml.save").rows(rowCount)) {
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                 OutputStream out = new BufferedOutputStream(fos, 64 * 1024)) {
+                XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+                writer.writeStartDocument("UTF-8", "1.0");
+                writer.writeStartElement("patients"); // корневой элемент
+                if (journalMark != null) {
+                    writer.writeAttribute("journal", journalMark);
+                }
 
-                // добавляем <patient> к корневому элементу <patients>
-                root.appendChild(patient);
+                // проходим по строкам таблицы и пишем элементы <patient>
+                int columns = FIELDS.length;
+                for (int row = 0; row < rowCount; row++) {
+                    if ((row & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Сохранение отменено"); // временный файл будет удалён
+                    }
+                    writer.writeStartElement("patient");
+                    for (int col = 0; col < columns; col++) {
+                        writer.writeStartElement(FIELDS[col]);
+                        writer.writeCharacters(Objects.toString(cells.getValueAt(row, col), ""));
+                        writer.writeEndElement();
+                    }
+                    writer.writeEndElement();
+                }
+
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close(); // закрывает только сам writer, поток закроет try
+                out.flush();
+                fos.getFD().sync(); // данные должны оказаться на диске до переименования
+            } catch (XMLStreamException ex) {
+                throw new IOException("Ошибка записи XML: " + ex.getMessage(), ex);
             }
-            System.setProperty("javax.xml.transform.TransformerFactory", "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl");
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
-            DOMSource source = new DOMSource(doc);
-            StreamResult result = new StreamResult(file);
 
-            // Записываем XML в указанный файл
-            transformer.transform(source, result);
+            replaceWithTemp(tmp, target);
+            op.file(file).succeeded(); // размер уже записанного файла
+        } finally {
+            Files.deleteIfExists(tmp); // после успешного переименования файла уже нет
+        }
+    }
+
+    /**
+     * Атомарно ставит записанный и сброшенный на диск временный файл на место целевого,
+     * сохраняя права целевого файла. Используется и для других файлов данных (см. {@link BinarySnapshot}).
+     * @param tmp временный файл в том же каталоге, что и целевой
+     * @param target целевой файл
+     * @throws IOException при ошибке переименования
+     */
+    static void replaceWithTemp(Path tmp, Path target) throws IOException {
+        copyPermissions(target, tmp);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
-        } catch (Exception ex) {
-            ex.printStackTrace();
+    /**
+     * Временный файл создаётся с правами только для владельца; переносим на него права
+     * заменяемого файла (или обычные rw-r--r--), чтобы сохранение их не меняло.
+     */
+    private static void copyPermissions(Path target, Path tmp) {
+        try {
+            Set<PosixFilePermission> permissions = Files.exists(target)
+                    ? Files.getPosixFilePermissions(target)
+                    : PosixFilePermissions.fromString("rw-r--r--");
+            Files.setPosixFilePermissions(tmp, permissions);
+        } catch (UnsupportedOperationException | IOException ex) {
+            // не POSIX файловая система — права остаются по умолчанию
         }
     }
 }
@@ -0,0 +1,200 @@
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import java.awt.Component;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Фоновая загрузка XML-файла в таблицу.
+ * <p>
+ * Файл разбирается потоковым парсером в рабочем потоке, строки передаются в модель порциями,
+ * так что первые записи появляются на экране сразу. Ход загрузки (по прочитанным байтам)
+ * показывается в {@link ProgressMonitor}; при нажатии "Отмена" или ошибке разбора в таблицу
+ * возвращаются прежние данные.
+ */
+public class XmlLoadTask extends SwingWorker<Integer, List<String[]>> {
+
+    /** Сколько строк передаётся в модель за один раз. */
+    private static final int CHUNK_SIZE = 2000;
+
+    private final PatientTableModel tableModel;
+    private final File file;
+    private final Component parent;
+    private final Consumer<File> onLoaded;
+    private final Runnable onFailed;
+
+    private ProgressMonitor progressMonitor;
+    private PatientSnapshot previous; // данные до начала загрузки (для отмены)
+    private boolean firstChunk = true;
+
+    // Используются только в рабочем потоке
+    private List<String[]> buffer = new ArrayList<>(CHUNK_SIZE);
+    private int count;
+
+    /**
+     * @param tableModel модель таблицы, куда будут загружены данные
+     * @param file       файл XML, откуда будут загружены данные
+     * @param parent     окно, над которым показывается ход загрузки и сообщения
+     * @param onLoaded   вызывается в потоке Swing после успешной загрузки
+     */
+    public XmlLoadTask(PatientTableModel tableModel, File file, Component parent, Consumer<File> onLoaded) {
+        this(tableModel, file, parent, onLoaded, null);
+    }
+
+    /**
+     * @param tableModel модель таблицы, куда будут загружены данные
+     * @param file       файл XML, откуда будут загружены данные
+     * @param parent     окно, над которым показывается ход загрузки и сообщения
+     * @param onLoaded   вызывается в потоке Swing после успешной загрузки
+     * @param onFailed   вызывается в потоке Swing после отмены или ошибки, когда прежние данные
+     *                   уже возвращены в модель; может быть {@code null}
+     */
+    public XmlLoadTask(PatientTableModel tableModel, File file, Component parent,
+                       Consumer<File> onLoaded, Runnable onFailed) {
+        this.tableModel = tableModel;
+        this.file = file;
+        this.parent = parent;
+        this.onLoaded = onLoaded;
+        this.onFailed = onFailed;
+    }
+
+    /**
+     * Запускает загрузку. Вызывать в потоке Swing (EDT).
+     */
+    public void start() {
+        previous = tableModel.snapshot();
+        progressMonitor = new ProgressMonitor(parent, "Загрузка " + file.getName(), "", 0, 100);
+        progressMonitor.setMillisToDecideToPopup(200);
+        addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName()) && !isDone()) {
+                progressMonitor.setProgress((Integer) evt.getNewValue());
+                if (progressMonitor.isCanceled()) {
+                    cancel(true);
+                }
+            }
+        });
+        execute();
+    }
+
+    @Override
+    protected Integer doInBackground() throws Exception {
+        long length = Math.max(1, file.length());
+
+        try (Metrics.Operation op = Metrics.begin("xml.load").file(file).detail("background");
+             CountingInputStream in = new CountingInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            XMLfile.readPatients(in, row -> {
+                if (isCancelled()) {
+                    throw new CancellationException(); // прерываем разбор
+                }
+                buffer.add(row);
+                count++;
+                if (buffer.size() == CHUNK_SIZE) {
+                    publish(buffer);
+                    buffer = new ArrayList<>(CHUNK_SIZE);
+                    setProgress((int) Math.min(99, in.getCount() * 100 / length));
+                }
+            });
+            op.rows(count).succeeded();
+        }
+        if (!buffer.isEmpty()) {
+            publish(buffer);
+        }
+        return count;
+    }
+
+    @Override
+    protected void process(List<List<String[]>> chunks) {
+        if (isCancelled()) {
+            return;
+        }
+        for (List<String[]> chunk : chunks) {
+            if (firstChunk) {
+                tableModel.setRows(chunk); // старые данные заменяются только когда пришли новые
+                firstChunk = false;
+            } else {
+                tableModel.addRows(chunk);
+            }
+        }
+    }
+
+    @Override
+    protected void done() {
+        progressMonitor.close();
+        try {
+            int rows = get();
+            if (firstChunk) {
+                tableModel.clear(); // файл без записей
+            }
+            System.out.println("Загружено записей: " + rows + " из " + file);
+            if (onLoaded != null) {
+                onLoaded.accept(file);
+            }
+        } catch (CancellationException ex) {
+            tableModel.restore(previous);
+            System.out.println("Загрузка отменена: " + file);
+            if (onFailed != null) {
+                onFailed.run();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            tableModel.restore(previous);
+            if (onFailed != null) {
+                onFailed.run();
+            }
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            cause.printStackTrace();
+            JOptionPane.showMessageDialog(parent, "Ошибка загрузки файла " + file.getName() + ":\n"
+                    + cause.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+        } finally {
+            previous = null;
+        }
+    }
+
+    // Поток, считающий прочитанные байты (для индикатора хода загрузки)
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
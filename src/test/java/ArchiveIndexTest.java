@@ -0,0 +1,95 @@
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.text.Collator;
+import java.util.Random;
+
+/**
+ * Индекс архива: порядок строк совпадает с сортировкой по Collator и DateSortKey
+ * (в том числе при слиянии многих серий), устаревший индекс не открывается.
+ */
+public class ArchiveIndexTest extends TestCase {
+
+    private static final String[] NAMES = {"Иванов", "иванов", "Ёлкин", "Елкин", "Smith", "smith", "Åberg", "", "Я"};
+    private static final String[] BAD_DATES = {"", "не указана", "32.01.2024", "abc", "😀", "Ａ"};
+    private static final int ROWS = 3000;
+
+    private File dir;
+    private File xml;
+    private File snapshotFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("archive").toFile();
+        xml = new File(dir, "data.xml");
+        snapshotFile = BinarySnapshot.fileFor(xml);
+        Random random = new Random(3);
+        PatientTableModel model = new PatientTableModel();
+        for (int i = 0; i < ROWS; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)] + " " + random.nextInt(500);
+            String date = random.nextInt(5) == 0 ? BAD_DATES[random.nextInt(BAD_DATES.length)]
+                    : String.format(random.nextBoolean() ? "%02d.%02d.%04d" : "%d.%d.%04d",
+                    1 + random.nextInt(28), 1 + random.nextInt(12), 1960 + random.nextInt(80));
+            model.addRow(new Object[]{name, "Грипп", "Петров", "Терапевт", date, "Accepted"});
+        }
+        XMLfile.writeXMLWithSnapshot(model.snapshot(), xml, null);
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private void checkOrder(int column, int runBytes) throws Exception {
+        ArchiveIndex.build(snapshotFile, column, runBytes);
+        Collator collator = Collator.getInstance();
+        try (PagedSnapshotStore store = PagedSnapshotStore.open(snapshotFile);
+             ArchiveIndex index = ArchiveIndex.open(snapshotFile, column, store.getRowCount())) {
+            assertNotNull(index);
+            boolean[] seen = new boolean[ROWS];
+            for (int position = 0; position < ROWS; position++) {
+                int row = index.getRow(position);
+                assertFalse("строка дважды: " + row, seen[row]);
+                seen[row] = true;
+                if (position == 0) {
+                    continue;
+                }
+                String previous = store.getValueAt(index.getRow(position - 1), column);
+                String current = store.getValueAt(row, column);
+                int order = column == PatientTableModel.DATE
+                        ? new DateSortKey(AppointmentDates.parse(previous), previous)
+                                .compareTo(new DateSortKey(AppointmentDates.parse(current), current))
+                        : collator.compare(previous, current);
+                assertTrue(previous + " перед " + current, order <= 0);
+            }
+        }
+    }
+
+    public void testNameOrderInMemory() throws Exception {
+        checkOrder(PatientTableModel.NAME, ArchiveIndex.RUN_BYTES);
+    }
+
+    public void testNameOrderWithMergedRuns() throws Exception {
+        checkOrder(PatientTableModel.NAME, 2048);
+        assertEquals("временные файлы удалены", 3, dir.listFiles().length);
+    }
+
+    public void testDateOrderWithMergedRuns() throws Exception {
+        checkOrder(PatientTableModel.DATE, 512);
+    }
+
+    public void testChangedSnapshotMakesIndexStale() throws Exception {
+        ArchiveIndex.build(snapshotFile, PatientTableModel.NAME);
+        try (ArchiveIndex index = ArchiveIndex.open(snapshotFile, PatientTableModel.NAME, ROWS)) {
+            assertNotNull(index);
+        }
+        FileTime modified = Files.getLastModifiedTime(snapshotFile.toPath());
+        Files.setLastModifiedTime(snapshotFile.toPath(), FileTime.fromMillis(modified.toMillis() + 1));
+        assertNull(ArchiveIndex.open(snapshotFile, PatientTableModel.NAME, ROWS));
+    }
+}
@@ -0,0 +1,106 @@
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Двоичный снимок: запись и чтение, проверка, что снимок записан вместе с XML,
+ * отказ от повреждённого файла.
+ */
+public class BinarySnapshotTest extends TestCase {
+
+    private File dir;
+    private File xml;
+    private PatientTableModel model;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("snapshot").toFile();
+        xml = new File(dir, "data.xml");
+        model = new PatientTableModel();
+        model.addRow(new Object[]{"Иванов", "Грипп", "Петров", "Терапевт", "01.02.2024", "Accepted"});
+        model.addRow(new Object[]{"Сидоров", "Ангина", "Петров", "Терапевт", "15.03.2024", "Waiting"});
+        model.addRow(new Object[]{"Кузнецов", "Грипп", "Смирнова", "Лор", "не указана", "Особый статус"});
+        XMLfile.writeXMLWithSnapshot(model.snapshot(), xml, "mark-1");
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static String dump(PatientTableModel model) {
+        StringBuilder text = new StringBuilder();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int col = 0; col < PatientSnapshot.COLUMN_COUNT; col++) {
+                text.append(model.getValueAt(row, col)).append('|');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    public void testWriteAndOpen() throws Exception {
+        assertTrue(BinarySnapshot.isUsable(xml));
+        PatientTableModel loaded = new PatientTableModel();
+        try (BinarySnapshot snapshot = BinarySnapshot.open(BinarySnapshot.fileFor(xml))) {
+            assertEquals(3, snapshot.getRowCount());
+            assertEquals("mark-1", snapshot.getJournalMark());
+            loaded.load(snapshot);
+        }
+        assertEquals(dump(model), dump(loaded));
+    }
+
+    public void testTakeContentsMovesLoadedRows() throws Exception {
+        PatientTableModel loaded = new PatientTableModel();
+        try (BinarySnapshot snapshot = BinarySnapshot.open(BinarySnapshot.fileFor(xml))) {
+            loaded.load(snapshot, null);
+        }
+        PatientTableModel table = new PatientTableModel();
+        table.addRow(new Object[]{"Прежний", "", "", "", "", ""});
+        table.takeContents(loaded);
+        assertEquals(dump(model), dump(table));
+        assertEquals(0, loaded.getRowCount());
+        table.addRow(new Object[]{"Новый", "Грипп", "Петров", "Терапевт", "01.02.2024", "Accepted"});
+        assertEquals(4, table.getRowCount());
+    }
+
+    public void testChangedXmlIsNotUsable() throws Exception {
+        FileTime modified = Files.getLastModifiedTime(xml.toPath());
+        try (RandomAccessFile out = new RandomAccessFile(xml, "rw")) {
+            out.setLength(out.length() + 1);
+        }
+        Files.setLastModifiedTime(xml.toPath(), modified);
+        assertFalse("размер XML изменился", BinarySnapshot.isUsable(xml));
+
+        XMLfile.writeXMLWithSnapshot(model.snapshot(), xml, null);
+        assertTrue(BinarySnapshot.isUsable(xml));
+        Files.setLastModifiedTime(xml.toPath(), FileTime.fromMillis(modified.toMillis() - 60_000));
+        assertFalse("время изменения XML изменилось", BinarySnapshot.isUsable(xml));
+    }
+
+    public void testMissingSnapshotIsNotUsable() {
+        assertTrue(BinarySnapshot.fileFor(xml).delete());
+        assertFalse(BinarySnapshot.isUsable(xml));
+    }
+
+    public void testCorruptedSnapshotIsRejected() throws Exception {
+        File binary = BinarySnapshot.fileFor(xml);
+        try (RandomAccessFile out = new RandomAccessFile(binary, "rw")) {
+            out.seek(BinarySnapshot.DICTIONARIES_OFFSET);
+            out.writeLong(out.length() + 100); // словарь первой колонки за концом файла
+        }
+        try {
+            BinarySnapshot.open(binary).close();
+            fail("повреждённый снимок открыт");
+        } catch (IOException expected) {
+            // ожидаемо
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Журнал изменений: проигрывание после закрытия, отбрасывание недописанного хвоста,
+ * значения длиннее 64 КБ.
+ */
+public class ChangeJournalTest extends TestCase {
+
+    private File dir;
+    private File xml;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("journal").toFile();
+        xml = new File(dir, "data.xml");
+        PatientTableModel model = new PatientTableModel();
+        model.addRow(row("Иванов", "Accepted"));
+        model.addRow(row("Сидоров", "Waiting"));
+        XMLfile.writeXML(model, xml);
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private static Object[] row(String name, String status) {
+        return new Object[]{name, "Грипп", "Петров", "Терапевт", "01.02.2024", status};
+    }
+
+    private PatientTableModel load() {
+        PatientTableModel model = new PatientTableModel();
+        XMLfile.loadFromXML(model, xml);
+        return model;
+    }
+
+    // Модель, загруженная из XML, с проигранным журналом
+    private PatientTableModel reopen() {
+        PatientTableModel model = load();
+        ChangeJournal.open(model, xml, null).close();
+        return model;
+    }
+
+    private static String dump(PatientTableModel model) {
+        StringBuilder text = new StringBuilder();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            for (int col = 0; col < PatientSnapshot.COLUMN_COUNT; col++) {
+                text.append(model.getValueAt(row, col)).append('|');
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    public void testReplayRestoresEdits() throws Exception {
+        PatientTableModel model = load();
+        ChangeJournal journal = ChangeJournal.open(model, xml, null);
+        model.addRow(row("Кузнецов", "Canceled"));
+        model.setValueAt("Accepted", 1, PatientTableModel.STATUS);
+        model.removeRow(0);
+        journal.sync();
+        journal.close();
+
+        assertEquals(dump(model), dump(reopen()));
+    }
+
+    public void testTornTailIsDropped() throws Exception {
+        PatientTableModel model = load();
+        ChangeJournal journal = ChangeJournal.open(model, xml, null);
+        model.addRow(row("Кузнецов", "Canceled"));
+        journal.sync();
+        String beforeLast = dump(model);
+        model.setValueAt("Смирнов", 0, PatientTableModel.NAME);
+        journal.sync();
+        journal.close();
+
+        // Последняя запись недописана: обрезаем несколько байт
+        File journalFile = ChangeJournal.journalFile(xml);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        PatientTableModel restored = load();
+        ChangeJournal continued = ChangeJournal.open(restored, xml, null);
+        assertEquals(beforeLast, dump(restored));
+
+        // Журнал продолжается с конца целой части
+        restored.setValueAt("Орлов", 1, PatientTableModel.NAME);
+        continued.sync();
+        continued.close();
+        assertEquals(dump(restored), dump(reopen()));
+    }
+
+    public void testCorruptedRecordIsDropped() throws Exception {
+        PatientTableModel model = load();
+        ChangeJournal journal = ChangeJournal.open(model, xml, null);
+        model.addRow(row("Кузнецов", "Canceled"));
+        journal.sync();
+        String beforeLast = dump(model);
+        model.addRow(row("Смирнов", "Waiting"));
+        journal.sync();
+        journal.close();
+
+        // Портим байт в последней записи — контрольная сумма не сходится
+        File journalFile = ChangeJournal.journalFile(xml);
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.seek(file.length() - 2);
+            int value = file.read();
+            file.seek(file.length() - 2);
+            file.write(value ^ 0xFF);
+        }
+        assertEquals(beforeLast, dump(reopen()));
+    }
+
+    public void testValuesLongerThan64K() throws Exception {
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'Ж'); // два байта в UTF-8: около 200 КБ
+        String diagnosis = new String(chars);
+
+        PatientTableModel model = load();
+        ChangeJournal journal = ChangeJournal.open(model, xml, null);
+        model.setValueAt(diagnosis, 0, PatientTableModel.DISEASE);
+        model.setValueAt("Смирнов", 1, PatientTableModel.NAME); // следующая запись не должна потеряться
+        journal.sync();
+        journal.close();
+
+        PatientTableModel restored = reopen();
+        assertEquals(diagnosis, restored.getValueAt(0, PatientTableModel.DISEASE));
+        assertEquals("Смирнов", restored.getValueAt(1, PatientTableModel.NAME));
+    }
+}
@@ -0,0 +1,68 @@
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Порядок дат приёма: корректные даты по дням, некорректные после них по тексту;
+ * сравнение транзитивно на смеси корректных и некорректных дат.
+ */
+public class DateSortKeyTest extends TestCase {
+
+    private static final String[] DATES = {"01.02.2024", "1.2.2024", "31.12.2023", "15.03.2024", "29.02.2024",
+            "", "не указана", "32.01.2024", "01.13.2024", "abc", "01.02.24", "31.12.1999", "ожидается"};
+
+    private static DateSortKey key(String text) {
+        return new DateSortKey(AppointmentDates.parse(text), text);
+    }
+
+    public void testValidDatesComeFirstInDayOrder() {
+        assertTrue(key("31.12.2023").compareTo(key("01.02.2024")) < 0);
+        assertEquals(0, key("01.02.2024").compareTo(key("1.2.2024")));
+        assertTrue(key("15.03.2024").compareTo(key("не указана")) < 0);
+        assertTrue(key("не указана").compareTo(key("01.01.1970")) > 0);
+        assertTrue(key("").compareTo(key("abc")) < 0);
+        assertTrue(key("32.01.2024").compareTo(key("abc")) < 0);
+    }
+
+    public void testComparisonIsTransitive() {
+        List<DateSortKey> keys = new ArrayList<>();
+        for (String date : DATES) {
+            keys.add(key(date));
+        }
+        for (DateSortKey a : keys) {
+            for (DateSortKey b : keys) {
+                assertEquals(a + " / " + b, Integer.signum(a.compareTo(b)), -Integer.signum(b.compareTo(a)));
+                for (DateSortKey c : keys) {
+                    if (a.compareTo(b) <= 0 && b.compareTo(c) <= 0) {
+                        assertTrue(a + " <= " + b + " <= " + c, a.compareTo(c) <= 0);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testLargeMixedSort() {
+        Random random = new Random(7);
+        List<DateSortKey> keys = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String text = random.nextInt(4) == 0
+                    ? DATES[5 + random.nextInt(DATES.length - 5)]
+                    : String.format("%02d.%02d.%04d", 1 + random.nextInt(28), 1 + random.nextInt(12), 1990 + random.nextInt(40));
+            keys.add(key(text));
+        }
+        Collections.sort(keys); // нетранзитивный порядок здесь дал бы "Comparison method violates its general contract"
+        boolean invalidSeen = false;
+        for (int i = 0; i < keys.size(); i++) {
+            DateSortKey current = keys.get(i);
+            boolean invalid = current.getEpochDay() == AppointmentDates.NO_DATE;
+            assertFalse("корректная дата после некорректной: " + current, invalidSeen && !invalid);
+            invalidSeen |= invalid;
+            if (i > 0) {
+                assertTrue(keys.get(i - 1).compareTo(current) <= 0);
+            }
+        }
+    }
+}
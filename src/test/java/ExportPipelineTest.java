@@ -0,0 +1,79 @@
+import junit.framework.TestCase;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Конвейер "Поток": прогон завершается ровно один раз, даже если этапы падают сразу;
+ * ожидание перед выходом дожидается и отложенного прогона.
+ */
+public class ExportPipelineTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("pipeline").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    public void testEachRunReportsOnce() throws Exception {
+        PatientTableModel model = new PatientTableModel();
+        model.addRow(new Object[]{"Иванов", "Грипп", "Петров", "Терапевт", "01.02.2024", "Accepted"});
+        List<String> statuses = Collections.synchronizedList(new ArrayList<>());
+        // Шаблонов нет: этапы отчётов падают сразу, запись XML крошечная
+        ExportPipeline pipeline = new ExportPipeline(new File(dir, "data.xml"),
+                new File(dir, "нет.jrxml").getPath(), new File(dir, "r.html").getPath(),
+                new File(dir, "нет.jrxml").getPath(), new File(dir, "r.pdf").getPath(), statuses::add);
+        for (int i = 0; i < 20; i++) {
+            SwingUtilities.invokeAndWait(() -> pipeline.request(model));
+            waitIdle(pipeline);
+        }
+        SwingUtilities.invokeAndWait(() -> { }); // итоги доставлены
+        assertEquals(20, statuses.size());
+        for (String status : statuses) {
+            assertTrue(status, status.startsWith("Поток: XML"));
+        }
+    }
+
+    public void testAwaitIdleIncludesPendingRun() throws Exception {
+        PatientTableModel model = new PatientTableModel();
+        model.addRow(new Object[]{"Иванов", "Грипп", "Петров", "Терапевт", "01.02.2024", "Accepted"});
+        List<String> statuses = Collections.synchronizedList(new ArrayList<>());
+        File xml = new File(dir, "data.xml");
+        ExportPipeline pipeline = new ExportPipeline(xml,
+                new File(dir, "нет.jrxml").getPath(), new File(dir, "r.html").getPath(),
+                new File(dir, "нет.jrxml").getPath(), new File(dir, "r.pdf").getPath(), statuses::add);
+        assertTrue(pipeline.awaitIdle(0));
+        SwingUtilities.invokeAndWait(() -> {
+            pipeline.request(model);
+            model.addRow(new Object[]{"Сидоров", "Ангина", "Петров", "Терапевт", "02.02.2024", "Waiting"});
+            pipeline.request(model); // отложенный прогон
+        });
+        assertTrue(pipeline.awaitIdle(30_000));
+        SwingUtilities.invokeAndWait(() -> assertFalse(pipeline.isRunning()));
+        assertEquals(2, statuses.size());
+        assertEquals(2, XMLfile.readSnapshot(xml).getRowCount());
+    }
+
+    private static void waitIdle(ExportPipeline pipeline) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        boolean[] running = {true};
+        while (running[0]) {
+            assertTrue("Прогон не завершился", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+            SwingUtilities.invokeAndWait(() -> running[0] = pipeline.isRunning());
+        }
+    }
+}
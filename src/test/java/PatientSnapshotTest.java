@@ -0,0 +1,40 @@
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Снимок, прочитанный из XML без модели таблицы ({@link XMLfile#readSnapshot}),
+ * совпадает со снимком модели, загруженной из того же файла.
+ */
+public class PatientSnapshotTest extends TestCase {
+
+    public void testReadSnapshotMatchesModel() throws Exception {
+        File dir = Files.createTempDirectory("snapshot").toFile();
+        File xml = new File(dir, "data.xml");
+        try {
+            PatientTableModel model = new PatientTableModel();
+            for (int i = 0; i < 100; i++) {
+                model.addRow(new Object[]{"Пациент " + i % 7, "Грипп", "Петров " + i % 3, "Терапевт",
+                        String.format("%02d.01.2024", 1 + i % 28), i % 5 == 0 ? "Особый статус" : "Waiting"});
+            }
+            model.addRow(new Object[]{"", "", "", "", "", ""});
+            XMLfile.writeXML(model, xml);
+
+            PatientSnapshot read = XMLfile.readSnapshot(xml);
+            PatientSnapshot expected = model.snapshot();
+            assertEquals(expected.getRowCount(), read.getRowCount());
+            for (int row = 0; row < read.getRowCount(); row++) {
+                for (int col = 0; col < PatientSnapshot.COLUMN_COUNT; col++) {
+                    assertEquals(expected.getValueAt(row, col), read.getValueAt(row, col));
+                }
+                // Коды известных статусов совпадают с AppointmentStatus, как в модели
+                assertEquals(expected.getCode(row, PatientTableModel.STATUS), read.getCode(row, PatientTableModel.STATUS));
+            }
+        } finally {
+            xml.delete();
+            BinarySnapshot.fileFor(xml).delete();
+            dir.delete();
+        }
+    }
+}
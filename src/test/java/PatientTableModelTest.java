@@ -0,0 +1,54 @@
+import junit.framework.TestCase;
+
+/**
+ * Проверки колоночной модели: значения, удаление строк и ограничение на число статусов.
+ */
+public class PatientTableModelTest extends TestCase {
+
+    private static Object[] row(String name, String status) {
+        return new Object[]{name, "Грипп", "Петров", "Терапевт", "01.02.2024", status};
+    }
+
+    public void testValuesAndRemove() {
+        PatientTableModel model = new PatientTableModel();
+        model.addRow(row("Иванов", "Accepted"));
+        model.addRow(row("Сидоров", "Waiting"));
+        model.addRow(row("Кузнецов", "Canceled"));
+        model.removeRow(1);
+        assertEquals(2, model.getRowCount());
+        assertEquals("Кузнецов", model.getValueAt(1, PatientTableModel.NAME));
+        assertEquals(AppointmentStatus.CANCELED, model.getStatus(1));
+        model.setValueAt("Waiting", 0, PatientTableModel.STATUS);
+        assertEquals(AppointmentStatus.WAITING, model.getStatus(0));
+    }
+
+    public void testManyDistinctStatusesAreKept() {
+        PatientTableModel model = new PatientTableModel();
+        for (int i = 0; i < 300; i++) {
+            model.addRow(row("Пациент " + i, "Статус " + i));
+        }
+        assertEquals("Статус 299", model.getValueAt(299, PatientTableModel.STATUS));
+        assertEquals("Статус 200", model.snapshot().getValueAt(200, PatientTableModel.STATUS));
+    }
+
+    public void testStatusOverflowLeavesModelUnchanged() {
+        PatientTableModel model = new PatientTableModel();
+        int known = model.getDictionarySize(PatientTableModel.STATUS);
+        for (int i = known; i < PatientTableModel.MAX_STATUSES; i++) {
+            model.addRow(row("Пациент", "Статус " + i));
+        }
+        assertEquals(PatientTableModel.MAX_STATUSES, model.getDictionarySize(PatientTableModel.STATUS));
+        int rows = model.getRowCount();
+        try {
+            model.setRow(0, row("Новое имя", "Ещё один статус"));
+            fail("Ожидалась ошибка: статусов больше, чем помещается в коды");
+        } catch (IllegalArgumentException expected) {
+            // строка не должна измениться, а словарь — пополниться
+        }
+        assertEquals("Пациент", model.getValueAt(0, PatientTableModel.NAME));
+        assertEquals(PatientTableModel.MAX_STATUSES, model.getDictionarySize(PatientTableModel.STATUS));
+        model.setValueAt("Accepted", 0, PatientTableModel.STATUS); // известные статусы по-прежнему принимаются
+        assertEquals(AppointmentStatus.ACCEPTED, model.getStatus(0));
+        assertEquals(rows, model.getRowCount());
+    }
+}